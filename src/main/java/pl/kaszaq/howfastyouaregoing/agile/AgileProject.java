@@ -8,28 +8,63 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 public class AgileProject {
 
     private final Map<String, Issue> data;
     private final String id;
+    @Getter(AccessLevel.PACKAGE)
+    private final StatusOrderCalculator statusOrderCalculator;
     @Getter(lazy = true)
     private final LocalDateTime firstIssueCreateDate = calculateFirstIssueCreateDate();
     @Getter(lazy = true)
     private final List<String> probableStatusOrder = calculateProbableStatusOrder();
+    /**
+     * Issues of the project. Issues are immutable and safe to be processed
+     * in parallel, for instance with {@code getAllIssues().parallelStream()}.
+     */
     @Getter(lazy = true)
     private final Collection<Issue> allIssues = calculateAllIssues();
+    @Getter(value = AccessLevel.PACKAGE, lazy = true)
+    private final IssueIndex index = new IssueIndex(getAllIssues());
 
-    AgileProject(String id, Map<String, Issue> data) {
+    AgileProject(String id, Map<String, Issue> data, StatusOrderCalculator statusOrderCalculator) {
         this.id = id;
         this.data = new HashMap<>(data);
+        this.statusOrderCalculator = statusOrderCalculator;
+    }
+
+    public String getId() {
+        return id;
     }
 
     public Issue getIssue(String issueId) {
         return data.get(issueId);
     }
 
+    /**
+     * @return query over all issues of the project, answered with indexes
+     * built on first use
+     */
+    public IssueQuery query() {
+        return new IssueQuery(getIndex());
+    }
+
+    /**
+     * Issues matching filter, in order of {@link #getAllIssues()}. Filters
+     * built with {@link IssueFilters} are answered with indexes where possible.
+     */
+    public List<Issue> getIssues(Predicate<Issue> filter) {
+        if (filter instanceof IssueCriteria) {
+            return query().filter(filter).getIssues();
+        }
+        return getAllIssues().stream().filter(filter).collect(Collectors.toList());
+    }
+
     public boolean contains(Issue issue) {
         return data.containsKey(issue.getKey());
     }
@@ -43,7 +78,7 @@ public class AgileProject {
     }
 
     private List<String> calculateProbableStatusOrder() {
-        return Collections.unmodifiableList(new ArrayList<>(StatusOrderCalculator.getStatusOrder(getAllIssues())));
+        return Collections.unmodifiableList(new ArrayList<>(statusOrderCalculator.getStatusOrder(getAllIssues())));
     }
 
     private LocalDateTime calculateFirstIssueCreateDate() {
@@ -0,0 +1,342 @@
+package pl.kaszaq.howfastyouaregoing.agile;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
+import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectData;
+import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectStatuses;
+
+/**
+ * Binary form of {@link AgileProjectData} used for project files. Strings
+ * which repeat across issues (keys, statuses, users, labels...) are stored
+ * once, where they are used first, and later referenced by index, dates are
+ * stored as epoch seconds with nanos and reference to the zone. Summary,
+ * description and custom fields (as json) are stored inline. Project is
+ * written to and read from stream as it goes, without whole file in memory.
+ *
+ * Layout: magic, version, project body. Version has to be increased on every
+ * change of the layout - files in other version are not read and project is
+ * loaded from json or recreated.
+ */
+class AgileProjectDataBinaryCodec {
+
+    private static final int MAGIC = 0x48465941; // HFYA
+    private static final int VERSION = 2;
+    private static final TypeReference<Map<String, Object>> CUSTOM_FIELDS_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    /**
+     * Writes project to the stream, stream is flushed but left open.
+     */
+    static void encode(AgileProjectData projectData, OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        new Encoder(out).writeProject(projectData);
+        out.flush();
+    }
+
+    static AgileProjectData decode(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a binary project file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version of binary project file: " + version);
+        }
+        return new Decoder(in).readProject();
+    }
+
+    private static class Encoder {
+
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final DataOutputStream out;
+
+        Encoder(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeProject(AgileProjectData projectData) throws IOException {
+            writeString(projectData.getProjectId());
+            writeDate(projectData.getLastUpdatedIssue());
+            writeDate(projectData.getLastUpdated());
+            writeStrings(projectData.getCustomFieldsNames());
+            AgileProjectStatuses statuses = projectData.getStatuses();
+            out.writeBoolean(statuses != null);
+            if (statuses != null) {
+                writeStrings(statuses.getIndeterminateStatuses());
+                writeStrings(statuses.getNewStatuses());
+                writeStrings(statuses.getDoneStatuses());
+                writeStrings(statuses.getUndefinedStatuses());
+            }
+            writeVarInt(out, projectData.getIssues().size());
+            for (IssueData issue : projectData.getIssues().values()) {
+                writeIssue(issue);
+            }
+        }
+
+        private void writeIssue(IssueData issue) throws IOException {
+            writeString(issue.getKey());
+            writeString(issue.getCreator());
+            writeString(issue.getType());
+            writeString(issue.getResolution());
+            writeString(issue.getStatus());
+            writeNullableInlineString(issue.getSummary());
+            writeNullableInlineString(issue.getDescription());
+            writeDate(issue.getCreated());
+            writeDate(issue.getUpdated());
+            out.writeBoolean(issue.isSubtask());
+            writeString(issue.getParentIssueKey());
+            writeStrings(issue.getSubtaskKeys());
+            writeStrings(issue.getLinkedIssuesKeys());
+            writeStrings(issue.getLabels());
+            writeStrings(issue.getComponents());
+            List<IssueStatusTransition> statusTransitions = issue.getIssueStatusTransitions();
+            writeSize(statusTransitions);
+            if (statusTransitions != null) {
+                for (IssueStatusTransition transition : statusTransitions) {
+                    writeString(transition.getUser());
+                    writeDate(transition.getDate());
+                    writeString(transition.getFromStatus());
+                    writeString(transition.getToStatus());
+                }
+            }
+            List<IssueBlockedTransition> blockedTransitions = issue.getIssueBlockedTransitions();
+            writeSize(blockedTransitions);
+            if (blockedTransitions != null) {
+                for (IssueBlockedTransition transition : blockedTransitions) {
+                    writeString(transition.getUser());
+                    writeDate(transition.getDate());
+                    writeString(transition.getFromStatus());
+                    writeString(transition.getToStatus());
+                }
+            }
+            Map<String, Object> customFields = issue.getCustomFields();
+            writeNullableInlineString(customFields == null ? null : OBJECT_MAPPER.writeValueAsString(customFields));
+        }
+
+        /**
+         * Reference to the next free index is followed by the string itself.
+         */
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                writeVarInt(out, index + 1);
+            } else {
+                writeVarInt(out, dictionary.size() + 1);
+                writeInlineString(out, value);
+                dictionary.put(value, dictionary.size());
+            }
+        }
+
+        private void writeStrings(Collection<String> values) throws IOException {
+            writeSize(values);
+            if (values != null) {
+                for (String value : values) {
+                    writeString(value);
+                }
+            }
+        }
+
+        private void writeSize(Collection<?> values) throws IOException {
+            writeVarInt(out, values == null ? 0 : values.size() + 1);
+        }
+
+        private void writeDate(ZonedDateTime date) throws IOException {
+            if (date == null) {
+                writeString(null);
+            } else {
+                writeString(date.getZone().getId());
+                writeVarLong(out, date.toEpochSecond());
+                writeVarInt(out, date.getNano());
+            }
+        }
+
+        private void writeNullableInlineString(String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                writeInlineString(out, value);
+            }
+        }
+    }
+
+    private static class Decoder {
+
+        private final DataInputStream in;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, ZoneId> zones = new HashMap<>();
+
+        Decoder(DataInputStream in) {
+            this.in = in;
+        }
+
+        AgileProjectData readProject() throws IOException {
+            String projectId = readString();
+            ZonedDateTime lastUpdatedIssue = readDate();
+            ZonedDateTime lastUpdated = readDate();
+            Set<String> customFieldsNames = readStringSet();
+            AgileProjectStatuses statuses = null;
+            if (in.readBoolean()) {
+                statuses = new AgileProjectStatuses(readStringSet(), readStringSet(), readStringSet(), readStringSet());
+            }
+            int issuesCount = readVarInt(in);
+            Map<String, IssueData> issues = new HashMap<>(issuesCount * 4 / 3 + 1);
+            for (int i = 0; i < issuesCount; i++) {
+                IssueData issue = readIssue();
+                issues.put(issue.getKey(), issue);
+            }
+            return new AgileProjectData(projectId, lastUpdatedIssue, lastUpdated, issues, customFieldsNames, statuses);
+        }
+
+        private IssueData readIssue() throws IOException {
+            IssueData.IssueDataBuilder builder = IssueData.builder()
+                    .key(readString())
+                    .creator(readString())
+                    .type(readString())
+                    .resolution(readString())
+                    .status(readString())
+                    .summary(readNullableInlineString())
+                    .description(readNullableInlineString())
+                    .created(readDate())
+                    .updated(readDate())
+                    .subtask(in.readBoolean())
+                    .parentIssueKey(readString())
+                    .subtaskKeys(readStringList())
+                    .linkedIssuesKeys(readStringList())
+                    .labels(readStringList())
+                    .components(readStringList());
+            int statusTransitionsSize = readVarInt(in);
+            List<IssueStatusTransition> statusTransitions = null;
+            if (statusTransitionsSize > 0) {
+                statusTransitions = new ArrayList<>(statusTransitionsSize - 1);
+                for (int i = 1; i < statusTransitionsSize; i++) {
+                    statusTransitions.add(new IssueStatusTransition(readString(), readDate(), readString(), readString()));
+                }
+            }
+            int blockedTransitionsSize = readVarInt(in);
+            List<IssueBlockedTransition> blockedTransitions = null;
+            if (blockedTransitionsSize > 0) {
+                blockedTransitions = new ArrayList<>(blockedTransitionsSize - 1);
+                for (int i = 1; i < blockedTransitionsSize; i++) {
+                    blockedTransitions.add(new IssueBlockedTransition(readString(), readDate(), readString(), readString()));
+                }
+            }
+            String customFields = readNullableInlineString();
+            return builder
+                    .issueStatusTransitions(statusTransitions)
+                    .issueBlockedTransitions(blockedTransitions)
+                    .customFields(customFields == null ? null : OBJECT_MAPPER.readValue(customFields, CUSTOM_FIELDS_TYPE))
+                    .build();
+        }
+
+        private String readString() throws IOException {
+            int reference = readVarInt(in);
+            if (reference == 0) {
+                return null;
+            }
+            if (reference == dictionary.size() + 1) {
+                dictionary.add(readInlineString(in));
+            } else if (reference > dictionary.size()) {
+                throw new IOException("Invalid string reference " + reference);
+            }
+            return dictionary.get(reference - 1);
+        }
+
+        private List<String> readStringList() throws IOException {
+            int size = readVarInt(in);
+            if (size == 0) {
+                return null;
+            }
+            List<String> values = new ArrayList<>(size - 1);
+            for (int i = 1; i < size; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        private Set<String> readStringSet() throws IOException {
+            List<String> values = readStringList();
+            return values == null ? null : new HashSet<>(values);
+        }
+
+        private ZonedDateTime readDate() throws IOException {
+            String zone = readString();
+            if (zone == null) {
+                return null;
+            }
+            long epochSecond = readVarLong(in);
+            int nanos = readVarInt(in);
+            return Instant.ofEpochSecond(epochSecond, nanos).atZone(zones.computeIfAbsent(zone, ZoneId::of));
+        }
+
+        private String readNullableInlineString() throws IOException {
+            return in.readBoolean() ? readInlineString(in) : null;
+        }
+    }
+
+    private static void writeInlineString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readInlineString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    /**
+     * Zig-zag encoded so that dates before epoch are short as well.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+}
@@ -15,9 +15,19 @@
  */
 package pl.kaszaq.howfastyouaregoing.agile;
 
+import java.util.Collection;
 import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectData;
 
 public interface AgileProjectDataObserver {
 
      void updated(AgileProjectData data, double progress); 
+
+    /**
+     * Called by readers which know which issues changed since previous
+     * notification. Observers interested only in current state of the project
+     * do not need to implement it.
+     */
+    default void updated(AgileProjectData data, Collection<IssueData> changedIssues, double progress) {
+        updated(data, progress);
+    }
 }
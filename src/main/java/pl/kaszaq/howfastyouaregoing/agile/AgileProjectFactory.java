@@ -2,6 +2,7 @@ package pl.kaszaq.howfastyouaregoing.agile;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -13,8 +14,24 @@ import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectData;
 public class AgileProjectFactory {
 
     public AgileProject createAgileProject(AgileProjectData projectData, IssueStatusMapping statusMapping) {
+        return createAgileProject(projectData, statusMapping, null);
+    }
+
+    /**
+     * @param statusOrderCalculator - calculator of previous version of the
+     * project, its copy is updated if statuses are mapped the same way, may
+     * be null
+     */
+    AgileProject createAgileProject(AgileProjectData projectData, IssueStatusMapping statusMapping, StatusOrderCalculator statusOrderCalculator) {
         Map<String, Issue> transformedAgileProjectData = new HashMap<>();
         Set<String> newAllStatuses = calculateNewValidStatuses(statusMapping, projectData);
+        Map<String, String> statusMappings = statusMapping == null ? Collections.emptyMap() : new HashMap<>(statusMapping.getMappings());
+        if (statusOrderCalculator == null || !statusOrderCalculator.isCountedWith(statusMappings, newAllStatuses)) {
+            statusOrderCalculator = new StatusOrderCalculator(statusMappings, newAllStatuses);
+        } else {
+            statusOrderCalculator = statusOrderCalculator.copy();
+        }
+        ProjectDictionary dictionary = new ProjectDictionary();
         projectData.getIssues().entrySet().forEach((entry) -> {
             String k = entry.getKey();
             IssueData v = entry.getValue();
@@ -37,11 +54,11 @@ public class AgileProjectFactory {
                     .labels(v.getLabels())
                     .components(v.getComponents())
                     .customFields(v.getCustomFields())
-                    .build());
+                    .build(), dictionary);
             transformedAgileProjectData.put(k, issue);
         });
 
-        return new AgileProject(projectData.getProjectId(), transformedAgileProjectData);
+        return new AgileProject(projectData.getProjectId(), transformedAgileProjectData, statusOrderCalculator);
     }
 
     private Set<String> calculateNewValidStatuses(IssueStatusMapping statusMapping, AgileProjectData projectData) {
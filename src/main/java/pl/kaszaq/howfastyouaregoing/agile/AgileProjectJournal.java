@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 kaszaq.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.kaszaq.howfastyouaregoing.agile;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
+import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectData;
+import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectJournalEntry;
+import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectStatuses;
+import pl.kaszaq.howfastyouaregoing.storage.FileStorage;
+
+/**
+ * Append-only log of issues changed since project file was last written. Each
+ * line is one {@link AgileProjectJournalEntry}. When replayed on top of
+ * project file it gives current state of the project.
+ */
+@Slf4j
+class AgileProjectJournal {
+
+    private final File journalFile;
+    private final FileStorage fileStorage;
+    @Getter
+    private int journaledIssues;
+    @Getter
+    private boolean damaged;
+
+    AgileProjectJournal(File journalFile, FileStorage fileStorage) {
+        this.journalFile = journalFile;
+        this.fileStorage = fileStorage;
+    }
+
+    /**
+     * Applies journal on top of project read from project file. Entries are
+     * applied only when they are newer than what is already there, so journal
+     * left after interrupted compaction does not revert any issue. Last line
+     * which could not be parsed is treated as interrupted write and ignored.
+     */
+    AgileProjectData replay(AgileProjectData projectData) throws IOException {
+        journaledIssues = 0;
+        damaged = false;
+        if (!journalFile.exists()) {
+            return projectData;
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(fileStorage.openInputStream(journalFile), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        }
+        Map<String, IssueData> issues = new HashMap<>(projectData.getIssues());
+        ZonedDateTime lastUpdatedIssue = projectData.getLastUpdatedIssue();
+        ZonedDateTime lastUpdated = projectData.getLastUpdated();
+        AgileProjectStatuses statuses = projectData.getStatuses();
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).isEmpty()) {
+                continue;
+            }
+            AgileProjectJournalEntry entry;
+            try {
+                entry = OBJECT_MAPPER.readValue(lines.get(i), AgileProjectJournalEntry.class);
+            } catch (IOException ex) {
+                if (i == lines.size() - 1) {
+                    LOG.warn("Ignoring incomplete last entry of journal {}", journalFile, ex);
+                    damaged = true;
+                    break;
+                }
+                throw ex;
+            }
+            for (IssueData issue : entry.getIssues()) {
+                IssueData current = issues.get(issue.getKey());
+                if (current == null || !current.getUpdated().isAfter(issue.getUpdated())) {
+                    issues.put(issue.getKey(), issue);
+                }
+            }
+            journaledIssues += entry.getIssues().size();
+            if (entry.getLastUpdatedIssue().isAfter(lastUpdatedIssue)) {
+                lastUpdatedIssue = entry.getLastUpdatedIssue();
+            }
+            if (!entry.getLastUpdated().isBefore(lastUpdated)) {
+                lastUpdated = entry.getLastUpdated();
+                statuses = entry.getStatuses();
+            }
+        }
+        return new AgileProjectData(projectData.getProjectId(), lastUpdatedIssue, lastUpdated,
+                Collections.unmodifiableMap(issues), projectData.getCustomFieldsNames(), statuses);
+    }
+
+    void append(AgileProjectData projectData, Collection<IssueData> changedIssues) throws IOException {
+        AgileProjectJournalEntry entry = new AgileProjectJournalEntry(projectData.getLastUpdatedIssue(), projectData.getLastUpdated(),
+                projectData.getStatuses(), new ArrayList<>(changedIssues));
+        ByteBuffer buffer = ByteBuffer.wrap((OBJECT_MAPPER.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+        try (WritableByteChannel channel = fileStorage.openAppendingChannel(journalFile)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        journaledIssues += changedIssues.size();
+    }
+
+    void clear() throws IOException {
+        fileStorage.deleteFile(journalFile);
+        journaledIssues = 0;
+        damaged = false;
+    }
+}
@@ -1,13 +1,22 @@
 package pl.kaszaq.howfastyouaregoing.agile;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Optional;
 
 /**
  *
  * @author michal.kasza
  */
-public interface AgileProjectProvider {
+public interface AgileProjectProvider extends Closeable {
 
     Optional<AgileProject> loadProject(String projectId, AgileProjectConfiguration configuration);
     Optional<AgileProject> loadProject(String projectId, AgileProjectConfiguration configuration, AgileProjectDataObserver observer);
+
+    /**
+     * Releases connections and threads held by the provider.
+     */
+    @Override
+    default void close() throws IOException {
+    }
 }
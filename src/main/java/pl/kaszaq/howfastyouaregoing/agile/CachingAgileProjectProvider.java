@@ -15,15 +15,22 @@
  */
 package pl.kaszaq.howfastyouaregoing.agile;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.time.Month;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 import pl.kaszaq.howfastyouaregoing.Config;
 import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
@@ -36,11 +43,20 @@ public class CachingAgileProjectProvider implements AgileProjectProvider {
 
     private static final ZonedDateTime INITIAL_DATE = ZonedDateTime.of(1970, Month.JANUARY.getValue(), 1, 0, 0, 0, 0, ZoneId.systemDefault());
 
+    private static final int MIN_JOURNALED_ISSUES_TO_COMPACT = 1000;
+
     private final File cacheDirectory;
     private final Set<String> customFieldsNames;
     private final AgileProjectDataReader agileProjectDataReader;
     private final boolean cacheOnly;
     private final FileStorage fileStorage;
+    private final ProjectFileFormat projectFileFormat;
+    /**
+     * Transitions counted for probable status order of last loaded version of
+     * projects. Next version gets a copy updated with changed issues, so
+     * previously returned projects keep their own counts.
+     */
+    private final Map<String, StatusOrderCalculator> statusOrderCalculators = new ConcurrentHashMap<>();
 
     public CachingAgileProjectProvider(
             File cacheDirectory,
@@ -48,11 +64,27 @@ public class CachingAgileProjectProvider implements AgileProjectProvider {
             AgileProjectDataReader agileProjectDataReader,
             Boolean cacheOnly,
             FileStorage fileStorage) {
+        this(cacheDirectory, customFieldsNames, agileProjectDataReader, cacheOnly, fileStorage, ProjectFileFormat.JSON);
+    }
+
+    public CachingAgileProjectProvider(
+            File cacheDirectory,
+            Set<String> customFieldsNames,
+            AgileProjectDataReader agileProjectDataReader,
+            Boolean cacheOnly,
+            FileStorage fileStorage,
+            ProjectFileFormat projectFileFormat) {
         this.cacheDirectory = cacheDirectory;
         this.customFieldsNames = new HashSet<>(customFieldsNames);
         this.agileProjectDataReader = agileProjectDataReader;
         this.cacheOnly = cacheOnly;
         this.fileStorage = fileStorage;
+        this.projectFileFormat = projectFileFormat;
+    }
+
+    @Override
+    public void close() throws IOException {
+        agileProjectDataReader.close();
     }
 
     @Override
@@ -63,21 +95,27 @@ public class CachingAgileProjectProvider implements AgileProjectProvider {
     @Override
     public Optional<AgileProject> loadProject(String projectId, AgileProjectConfiguration configuration, AgileProjectDataObserver observer) {
         try {
-            Optional<AgileProjectData> projectDataOptional = loadProjectFromFile(projectId);
+            AgileProjectJournal journal = new AgileProjectJournal(getJournalFile(projectId), fileStorage);
+            Optional<AgileProjectData> projectDataOptional = loadProjectFromFile(projectId, journal);
             AgileProjectData projectData = projectDataOptional.orElse(createNewEmptyProject(projectId));
             if (!projectData.getCustomFieldsNames().containsAll(customFieldsNames)) {
                 LOG.info("Noticied different setup of custom fields. Forcing to recreate project.");
                 projectData = createNewEmptyProject(projectId);
+                projectDataOptional = Optional.empty();
+            }
+            if (!projectDataOptional.isPresent()) {
+                journal.clear();
             }
 
-            projectData = agileProjectDataReader.updateProject(projectData, (project, progress) -> {
-                if (observer != null) {
-                    observer.updated(project, progress);
-                }
-                saveProjectToFile(project);
-            }, cacheOnly);
+            // project read from file in other format is written in selected one on first update
+            AgileProjectData savedProject = getProjectFile(projectId, projectFileFormat).exists() ? projectDataOptional.orElse(null) : null;
+            projectData = agileProjectDataReader.updateProject(projectData,
+                    new ProjectFileWriter(journal, savedProject, observer), cacheOnly);
 
-            return Optional.of(new AgileProjectFactory().createAgileProject(projectData, configuration.getIssueStatusMapping()));
+            AgileProject project = new AgileProjectFactory().createAgileProject(projectData, configuration.getIssueStatusMapping(),
+                    statusOrderCalculators.get(projectId));
+            statusOrderCalculators.put(projectId, project.getStatusOrderCalculator());
+            return Optional.of(project);
         } catch (Throwable ex) {
             LOG.warn("Problem while reading project data of project {}" , projectId, ex);
             return Optional.empty();
@@ -88,13 +126,51 @@ public class CachingAgileProjectProvider implements AgileProjectProvider {
         return new AgileProjectData(projectId, INITIAL_DATE, INITIAL_DATE, new HashMap<>(), customFieldsNames, null);
     }
 
-    private Optional<AgileProjectData> loadProjectFromFile(String projectId) throws IOException {
-        File projectFile = getProjectFile(projectId);
+    /**
+     * Reads project file in selected format. If it is missing or unreadable
+     * project file in the other format is used, which allows migrating
+     * between formats without downloading project again.
+     */
+    private Optional<AgileProjectData> loadProjectFromFile(String projectId, AgileProjectJournal journal) throws IOException {
+        Optional<AgileProjectData> projectData = loadProjectFromFile(projectId, projectFileFormat);
+        if (!projectData.isPresent()) {
+            for (ProjectFileFormat format : ProjectFileFormat.values()) {
+                if (format != projectFileFormat) {
+                    projectData = loadProjectFromFile(projectId, format);
+                    if (projectData.isPresent()) {
+                        LOG.info("Project {} read from {} project file", projectId, format);
+                        break;
+                    }
+                }
+            }
+        }
+        if (projectData.isPresent()) {
+            try {
+                return Optional.of(journal.replay(projectData.get()));
+            } catch (Throwable ex) {
+                // journal may hold issues missing from project file, so project is downloaded again
+                LOG.warn("Problem while replaying journal of project {}, project will be recreated", projectId, ex);
+                journal.clear();
+                return Optional.empty();
+            }
+        }
+        return projectData;
+    }
+
+    private Optional<AgileProjectData> loadProjectFromFile(String projectId, ProjectFileFormat format) {
+        File projectFile = getProjectFile(projectId, format);
         if (projectFile.exists()) {
             try {
-                return Optional.of(OBJECT_MAPPER.readValue(fileStorage.loadFile(projectFile), AgileProjectData.class));
+                if (format == ProjectFileFormat.BINARY) {
+                    try (InputStream in = fileStorage.openBinaryInputStream(projectFile)) {
+                        return Optional.of(AgileProjectDataBinaryCodec.decode(in));
+                    }
+                }
+                try (InputStream in = fileStorage.openInputStream(projectFile)) {
+                    return Optional.of(OBJECT_MAPPER.readValue(in, AgileProjectData.class));
+                }
             } catch (Throwable ex) {
-                LOG.warn("Problem while reading project {} from file" + projectId, ex);
+                LOG.warn("Problem while reading project {} from file {}", projectId, projectFile, ex);
                 return Optional.empty();
             }
         } else {
@@ -102,16 +178,76 @@ public class CachingAgileProjectProvider implements AgileProjectProvider {
         }
     }
 
-    private File getProjectFile(String projectId) {
-        return new File(cacheDirectory, projectId + ".json");
+    private File getProjectFile(String projectId, ProjectFileFormat format) {
+        return new File(cacheDirectory, projectId + format.getExtension());
     }
 
-    private void saveProjectToFile(AgileProjectData project) {
-        try {
-            File projectFile = getProjectFile(project.getProjectId());
-            fileStorage.storeFile(projectFile, OBJECT_MAPPER.writeValueAsString(project));
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
+    private File getJournalFile(String projectId) {
+        return new File(cacheDirectory, projectId + ".journal");
+    }
+
+    private void saveProjectToFile(AgileProjectData project) throws IOException {
+        File projectFile = getProjectFile(project.getProjectId(), projectFileFormat);
+        if (projectFileFormat == ProjectFileFormat.BINARY) {
+            try (OutputStream out = fileStorage.openBinaryOutputStream(projectFile)) {
+                AgileProjectDataBinaryCodec.encode(project, out);
+            }
+        } else {
+            try (OutputStream out = new BufferedOutputStream(Channels.newOutputStream(fileStorage.openWriteChannel(projectFile)))) {
+                OBJECT_MAPPER.writeValue(out, project);
+            }
+        }
+        // project file in other format is outdated now and journal will be written on top of this one only
+        for (ProjectFileFormat format : ProjectFileFormat.values()) {
+            if (format != projectFileFormat) {
+                fileStorage.deleteFile(getProjectFile(project.getProjectId(), format));
+            }
+        }
+    }
+
+    /**
+     * Persists updates of the project. Changed issues are appended to the
+     * journal, whole project file is rewritten (compacted) only when journal
+     * grows big in comparison to the project or when there is no valid project
+     * file to append to.
+     */
+    private class ProjectFileWriter implements AgileProjectDataObserver {
+
+        private final AgileProjectJournal journal;
+        private final AgileProjectDataObserver observer;
+        private AgileProjectData savedProject;
+
+        ProjectFileWriter(AgileProjectJournal journal, AgileProjectData savedProject, AgileProjectDataObserver observer) {
+            this.journal = journal;
+            this.savedProject = savedProject;
+            this.observer = observer;
+        }
+
+        @Override
+        public void updated(AgileProjectData project, double progress) {
+            // reader did not say what changed, so everything has to be written
+            updated(project, project.getIssues().values(), progress);
+        }
+
+        @Override
+        public void updated(AgileProjectData project, Collection<IssueData> changedIssues, double progress) {
+            if (observer != null) {
+                observer.updated(project, changedIssues, progress);
+            }
+            try {
+                if (savedProject == null || journal.isDamaged()
+                        || journal.getJournaledIssues() + changedIssues.size() > Math.max(MIN_JOURNALED_ISSUES_TO_COMPACT, project.getIssues().size() / 2)) {
+                    saveProjectToFile(project);
+                    journal.clear();
+                } else if (!changedIssues.isEmpty()
+                        || !project.getLastUpdated().isEqual(savedProject.getLastUpdated())
+                        || project.getStatuses() != savedProject.getStatuses()) {
+                    journal.append(project, changedIssues);
+                }
+                savedProject = project;
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
         }
     }
 
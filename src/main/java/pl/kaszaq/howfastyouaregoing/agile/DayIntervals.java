@@ -0,0 +1,135 @@
+package pl.kaszaq.howfastyouaregoing.agile;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set of days kept as sorted, disjoint ranges of epoch days. Memory depends
+ * on number of ranges only, not on number of days they cover.
+ */
+final class DayIntervals {
+
+    static final DayIntervals EMPTY = new DayIntervals(new int[0], new int[0]);
+
+    private final int[] starts;
+    private final int[] ends;
+
+    private DayIntervals(int[] starts, int[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    boolean contains(LocalDate date) {
+        return contains(date.toEpochDay());
+    }
+
+    boolean contains(long epochDay) {
+        int index = findInterval(epochDay);
+        return index >= 0 && ends[index] >= epochDay;
+    }
+
+    /**
+     * Days from given range (both ends inclusive) which belong to this set.
+     * Bit {@code i} is set when {@code from.plusDays(i)} belongs to the set.
+     */
+    BitSet mask(LocalDate from, LocalDate to) {
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        BitSet mask = new BitSet();
+        if (toDay < fromDay) {
+            return mask;
+        }
+        for (int i = Math.max(0, findInterval(fromDay)); i < starts.length && starts[i] <= toDay; i++) {
+            long start = Math.max(starts[i], fromDay);
+            long end = Math.min(ends[i], toDay);
+            if (start <= end) {
+                mask.set(Math.toIntExact(start - fromDay), Math.toIntExact(end - fromDay + 1));
+            }
+        }
+        return mask;
+    }
+
+    Set<LocalDate> toLocalDates() {
+        Set<LocalDate> dates = new HashSet<>();
+        for (int i = 0; i < starts.length; i++) {
+            for (long day = starts[i]; day <= ends[i]; day++) {
+                dates.add(LocalDate.ofEpochDay(day));
+            }
+        }
+        return dates;
+    }
+
+    boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    /**
+     * Index of last interval starting not later than given day, -1 if there
+     * is none.
+     */
+    private int findInterval(long epochDay) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    static class Builder {
+
+        private int[] starts = new int[4];
+        private int[] ends = new int[4];
+        private int size;
+
+        /**
+         * Adds range of days, both ends inclusive. Empty ranges (end before
+         * start) are ignored.
+         */
+        Builder add(long startEpochDay, long endEpochDay) {
+            if (endEpochDay < startEpochDay) {
+                return this;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = Math.toIntExact(startEpochDay);
+            ends[size] = Math.toIntExact(endEpochDay);
+            size++;
+            return this;
+        }
+
+        DayIntervals build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(starts[a], starts[b]));
+            int[] mergedStarts = new int[size];
+            int[] mergedEnds = new int[size];
+            int merged = 0;
+            for (int i : order) {
+                if (merged > 0 && starts[i] <= mergedEnds[merged - 1] + 1L) {
+                    mergedEnds[merged - 1] = Math.max(mergedEnds[merged - 1], ends[i]);
+                } else {
+                    mergedStarts[merged] = starts[i];
+                    mergedEnds[merged] = ends[i];
+                    merged++;
+                }
+            }
+            return new DayIntervals(Arrays.copyOf(mergedStarts, merged), Arrays.copyOf(mergedEnds, merged));
+        }
+    }
+}
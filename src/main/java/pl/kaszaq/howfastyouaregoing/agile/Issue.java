@@ -16,24 +16,59 @@
 package pl.kaszaq.howfastyouaregoing.agile;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import java.lang.reflect.Type;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
 import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
 
 public class Issue implements Comparable<Issue> {
 
     private final IssueData issueData;
+    private final IssueTransitions statusTransitions;
+    private final IssueTransitions blockedTransitions;
     private final IssueDataWrapper issueDataWrapper;
+    @Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final Map<CustomFieldKey, Optional<Object>> customFieldValues = new ConcurrentHashMap<>(4);
 
-    Issue(IssueData issueData) {
-        this.issueData = issueData;
-        this.issueDataWrapper = new IssueDataWrapper(issueData);
+    /**
+     * @param issueData - data of the issue, its transitions are not kept
+     * @param dictionary - dictionary of project the issue belongs to, used to
+     * keep transitions in compact form
+     */
+    Issue(IssueData issueData, ProjectDictionary dictionary) {
+        this.issueData = IssueData.builder()
+                .created(issueData.getCreated())
+                .creator(issueData.getCreator())
+                .summary(issueData.getSummary())
+                .description(issueData.getDescription())
+                .key(issueData.getKey())
+                .linkedIssuesKeys(issueData.getLinkedIssuesKeys())
+                .parentIssueKey(issueData.getParentIssueKey())
+                .resolution(issueData.getResolution())
+                .subtask(issueData.isSubtask())
+                .subtaskKeys(issueData.getSubtaskKeys())
+                .status(issueData.getStatus())
+                .updated(issueData.getUpdated())
+                .type(issueData.getType())
+                .labels(issueData.getLabels())
+                .components(issueData.getComponents())
+                .customFields(issueData.getCustomFields())
+                .build();
+        this.statusTransitions = IssueTransitions.ofStatusTransitions(issueData.getIssueStatusTransitions(), dictionary);
+        this.blockedTransitions = IssueTransitions.ofBlockedTransitions(issueData.getIssueBlockedTransitions(), dictionary);
+        this.issueDataWrapper = new IssueDataWrapper(issueData.getKey(), statusTransitions, blockedTransitions);
     }
 
     public Duration getDurationInStatuses(String... statuses) {
@@ -44,6 +79,15 @@ public class Issue implements Comparable<Issue> {
         return issueDataWrapper.isStatusOnDay(date, statuses);
     }
 
+    /**
+     * Days between given dates (both inclusive) on which issue was in any of
+     * given statuses. Bit {@code i} is set when
+     * {@code isStatusOnDay(from.plusDays(i), statuses)} holds.
+     */
+    public BitSet getStatusOnDaysMask(LocalDate from, LocalDate to, Set<String> statuses) {
+        return issueDataWrapper.getStatusOnDaysMask(from, to, statuses);
+    }
+
     public Map<String, Duration> getTimeInStatus() {
         return issueDataWrapper.getTimeInStatus();
     }
@@ -52,6 +96,19 @@ public class Issue implements Comparable<Issue> {
         return issueDataWrapper.getAllDayBlockedDays();
     }
 
+    public boolean isBlockedEntireDay(LocalDate date) {
+        return issueDataWrapper.isBlockedEntireDay(date);
+    }
+
+    /**
+     * Days between given dates (both inclusive) on which issue was blocked
+     * entire day. Bit {@code i} is set when issue was blocked on
+     * {@code from.plusDays(i)}.
+     */
+    public BitSet getAllDayBlockedMask(LocalDate from, LocalDate to) {
+        return issueDataWrapper.getAllDayBlockedMask(from, to);
+    }
+
     public String getPrettyName() {
         return issueData.getPrettyName();
     }
@@ -116,25 +173,38 @@ public class Issue implements Comparable<Issue> {
         return issueData.getComponents();
     }
 
+    /**
+     * Transitions are kept in compact form, returned list creates transition
+     * objects on each access.
+     */
     public List<IssueStatusTransition> getIssueStatusTransitions() {
-        return issueData.getIssueStatusTransitions();
+        return statusTransitions.asStatusTransitions();
     }
 
+    /**
+     * Transitions are kept in compact form, returned list creates transition
+     * objects on each access.
+     */
     public List<IssueBlockedTransition> getIssueBlockedTransitions() {
-        return issueData.getIssueBlockedTransitions();
+        return blockedTransitions.asBlockedTransitions();
     }
 
     /**
-     * Getter for custom fields defined
+     * Getter for custom fields defined. Value is converted to requested type
+     * once and the same instance is returned on subsequent calls with the same
+     * type, so returned value should not be modified.
      *
      * @param customFieldName - name of defined custome field name to read
      * @param typeReference - type reference of value of given custom field, for
      * instance new TypeReference<List<Integer>>()
      * @return
      */
-    public <T> T get(String customFieldName, TypeReference<?> typeReference) {
-        // TODO: this conversion, if impacts performance, could be cached
-        return OBJECT_MAPPER.convertValue(issueData.getCustomFields().get(customFieldName), typeReference);
+    @SuppressWarnings("unchecked")
+    public <T> T get(String customFieldName, TypeReference<T> typeReference) {
+        CustomFieldKey key = new CustomFieldKey(customFieldName, typeReference.getType());
+        return (T) getCustomFieldValues().computeIfAbsent(key,
+                k -> Optional.ofNullable(OBJECT_MAPPER.convertValue(issueData.getCustomFields().get(customFieldName), typeReference)))
+                .orElse(null);
     }
 
     @Override
@@ -173,4 +243,10 @@ public class Issue implements Comparable<Issue> {
         return result;
     }
 
+    @Value
+    private static class CustomFieldKey {
+
+        private final String name;
+        private final Type type;
+    }
 }
@@ -0,0 +1,302 @@
+package pl.kaszaq.howfastyouaregoing.agile;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import lombok.Getter;
+
+/**
+ * Predicate on issues which, unlike lambda, can be inspected. It is a tree of
+ * {@link And}, {@link Or} and {@link Not} nodes with leaf criteria:
+ * {@link Indexed} - answered with project indexes and {@link Matching} -
+ * evaluated issue by issue. Criteria are created with {@link IssueFilters}.
+ *
+ * When criteria are passed to {@link AgileProject#getIssues(Predicate)} (and so
+ * to computers using it) indexed leaves are answered with bitset algebra and
+ * remaining leaves are evaluated only on issues which may still match. Used
+ * as plain predicate it gives same results as corresponding
+ * {@link IssuePredicates}.
+ */
+public abstract class IssueCriteria implements Predicate<Issue> {
+
+    static final int INDEXED_COST = 0;
+    static final int MATCHING_COST = 1;
+
+    IssueCriteria() {
+    }
+
+    /**
+     * @return subset of candidates (ordinals of issues in given index) which
+     * match criteria
+     */
+    abstract BitSet evaluate(IssueIndex index, BitSet candidates);
+
+    /**
+     * Rough cost of evaluation used to order criteria, the cheapest first.
+     */
+    abstract int getCost();
+
+    @Override
+    public IssueCriteria and(Predicate<? super Issue> other) {
+        return new And(ImmutableList.of(this, of(other)));
+    }
+
+    @Override
+    public IssueCriteria or(Predicate<? super Issue> other) {
+        return new Or(ImmutableList.of(this, of(other)));
+    }
+
+    @Override
+    public IssueCriteria negate() {
+        return new Not(this);
+    }
+
+    static IssueCriteria of(Predicate<? super Issue> predicate) {
+        if (predicate instanceof IssueCriteria) {
+            return (IssueCriteria) predicate;
+        }
+        return new Matching("predicate", predicate::test, MATCHING_COST);
+    }
+
+    /**
+     * Issues having one of values of an indexed attribute (or all of them for
+     * multi-value attributes where it is stated so by name).
+     */
+    public static final class Indexed extends IssueCriteria {
+
+        @Getter
+        private final String name;
+        @Getter
+        private final Set<String> values;
+        private final BiFunction<IssueIndex, Set<String>, BitSet> lookup;
+        private final Predicate<Issue> test;
+
+        Indexed(String name, Set<String> values, BiFunction<IssueIndex, Set<String>, BitSet> lookup, Predicate<Issue> test) {
+            this.name = name;
+            this.values = values;
+            this.lookup = lookup;
+            this.test = test;
+        }
+
+        @Override
+        public boolean test(Issue issue) {
+            return test.test(issue);
+        }
+
+        @Override
+        BitSet evaluate(IssueIndex index, BitSet candidates) {
+            BitSet result = lookup.apply(index, values);
+            result.and(candidates);
+            return result;
+        }
+
+        @Override
+        int getCost() {
+            return INDEXED_COST;
+        }
+
+        @Override
+        public String toString() {
+            return name + values;
+        }
+    }
+
+    /**
+     * Criteria which can only be checked issue by issue.
+     */
+    public static final class Matching extends IssueCriteria {
+
+        @Getter
+        private final String name;
+        private final Predicate<Issue> test;
+        private final int cost;
+
+        Matching(String name, Predicate<Issue> test, int cost) {
+            this.name = name;
+            this.test = test;
+            this.cost = cost;
+        }
+
+        @Override
+        public boolean test(Issue issue) {
+            return test.test(issue);
+        }
+
+        @Override
+        BitSet evaluate(IssueIndex index, BitSet candidates) {
+            return index.filter(candidates, test);
+        }
+
+        @Override
+        int getCost() {
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Getter
+    public static final class And extends IssueCriteria {
+
+        private final List<IssueCriteria> criteria;
+
+        And(List<IssueCriteria> criteria) {
+            this.criteria = flatten(criteria, And.class);
+        }
+
+        @Override
+        public boolean test(Issue issue) {
+            for (IssueCriteria criterion : criteria) {
+                if (!criterion.test(issue)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Cheapest criteria narrow candidates first so that expensive ones are
+         * evaluated on as few issues as possible.
+         */
+        @Override
+        BitSet evaluate(IssueIndex index, BitSet candidates) {
+            BitSet result = candidates;
+            for (IssueCriteria criterion : byCost(criteria)) {
+                if (result.isEmpty()) {
+                    break;
+                }
+                result = criterion.evaluate(index, result);
+            }
+            return result == candidates ? (BitSet) candidates.clone() : result;
+        }
+
+        @Override
+        int getCost() {
+            return maxCost(criteria);
+        }
+
+        @Override
+        public String toString() {
+            return criteria.stream().map(Object::toString).collect(Collectors.joining(", ", "and(", ")"));
+        }
+    }
+
+    @Getter
+    public static final class Or extends IssueCriteria {
+
+        private final List<IssueCriteria> criteria;
+
+        Or(List<IssueCriteria> criteria) {
+            this.criteria = flatten(criteria, Or.class);
+        }
+
+        @Override
+        public boolean test(Issue issue) {
+            for (IssueCriteria criterion : criteria) {
+                if (criterion.test(issue)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Each criterion is evaluated only on candidates not matched by
+         * cheaper ones.
+         */
+        @Override
+        BitSet evaluate(IssueIndex index, BitSet candidates) {
+            BitSet result = new BitSet();
+            BitSet remaining = (BitSet) candidates.clone();
+            for (IssueCriteria criterion : byCost(criteria)) {
+                if (remaining.isEmpty()) {
+                    break;
+                }
+                BitSet matching = criterion.evaluate(index, remaining);
+                result.or(matching);
+                remaining.andNot(matching);
+            }
+            return result;
+        }
+
+        @Override
+        int getCost() {
+            return maxCost(criteria);
+        }
+
+        @Override
+        public String toString() {
+            return criteria.stream().map(Object::toString).collect(Collectors.joining(", ", "or(", ")"));
+        }
+    }
+
+    @Getter
+    public static final class Not extends IssueCriteria {
+
+        private final IssueCriteria criteria;
+
+        Not(IssueCriteria criteria) {
+            this.criteria = criteria;
+        }
+
+        @Override
+        public boolean test(Issue issue) {
+            return !criteria.test(issue);
+        }
+
+        @Override
+        BitSet evaluate(IssueIndex index, BitSet candidates) {
+            BitSet result = (BitSet) candidates.clone();
+            result.andNot(criteria.evaluate(index, candidates));
+            return result;
+        }
+
+        @Override
+        public IssueCriteria negate() {
+            return criteria;
+        }
+
+        @Override
+        int getCost() {
+            return criteria.getCost();
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + criteria + ")";
+        }
+    }
+
+    private static List<IssueCriteria> flatten(List<IssueCriteria> criteria, Class<? extends IssueCriteria> type) {
+        List<IssueCriteria> flattened = new ArrayList<>();
+        for (IssueCriteria criterion : criteria) {
+            if (type == And.class && criterion instanceof And) {
+                flattened.addAll(((And) criterion).criteria);
+            } else if (type == Or.class && criterion instanceof Or) {
+                flattened.addAll(((Or) criterion).criteria);
+            } else {
+                flattened.add(criterion);
+            }
+        }
+        return ImmutableList.copyOf(flattened);
+    }
+
+    private static List<IssueCriteria> byCost(List<IssueCriteria> criteria) {
+        List<IssueCriteria> sorted = new ArrayList<>(criteria);
+        sorted.sort(Comparator.comparingInt(IssueCriteria::getCost));
+        return sorted;
+    }
+
+    private static int maxCost(List<IssueCriteria> criteria) {
+        return criteria.stream().mapToInt(IssueCriteria::getCost).max().orElse(INDEXED_COST);
+    }
+}
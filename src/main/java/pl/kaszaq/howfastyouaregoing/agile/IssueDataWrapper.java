@@ -1,113 +1,196 @@
 package pl.kaszaq.howfastyouaregoing.agile;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.ZonedDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.function.BiFunction;
 import java.util.stream.Stream;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import static pl.kaszaq.howfastyouaregoing.clock.HFYAGClock.getClock;
-import pl.kaszaq.howfastyouaregoing.utils.DateUtils;
 
-@AllArgsConstructor
+/**
+ * Data derived from issue transitions. Each structure is calculated once, on
+ * first access, and is immutable afterwards, so issues may be queried from
+ * many threads at once (for instance from parallel streams).
+ */
+@Slf4j
 class IssueDataWrapper {
 
-    private final IssueData issue;
+    private final String issueKey;
+    private final IssueTransitions statusTransitions;
+    private final IssueTransitions blockedTransitions;
 
     @Getter(lazy = true)
     private final Map<String, Duration> timeInStatus = calculateTimeInStatus();
 
     @Getter(lazy = true)
-    private final Set<LocalDate> allDayBlockedDays = calculateDatesWhenAllDayBlocked();
-    private final Map<String, SortedSet<LocalDate>> datesInStatus = new HashMap<>();
+    private final DayIntervals daysWhenAllDayBlocked = calculateDaysWhenAllDayBlocked();
+
+    @Getter(lazy = true)
+    private final Set<LocalDate> allDayBlockedDays = Collections.unmodifiableSet(getDaysWhenAllDayBlocked().toLocalDates());
+
+    @Getter(lazy = true)
+    private final StatusDayIntervals daysInStatuses = calculateDaysInStatuses();
+
+    IssueDataWrapper(String issueKey, IssueTransitions statusTransitions, IssueTransitions blockedTransitions) {
+        this.issueKey = issueKey;
+        this.statusTransitions = statusTransitions;
+        this.blockedTransitions = blockedTransitions;
+    }
 
     public Duration getDurationInStatuses(String... statuses) {
         return Stream.of(statuses).map(status -> getTimeInStatus().getOrDefault(status, Duration.ZERO)).reduce(Duration::plus).get();
     }
 
-    public boolean isStatusOnDay(LocalDate date, Set<String> statuses) {
-        return statuses.stream().anyMatch((status) -> (getDatesInStatus(status).contains(date)));
+    public boolean isBlockedEntireDay(LocalDate date) {
+        return getDaysWhenAllDayBlocked().contains(date);
     }
 
-    private SortedSet<LocalDate> getDatesInStatus(String status) {
-        return datesInStatus.computeIfAbsent(status, s -> calculateDatesInStatus(s));
+    public BitSet getAllDayBlockedMask(LocalDate from, LocalDate to) {
+        return getDaysWhenAllDayBlocked().mask(from, to);
     }
 
-    private SortedSet<LocalDate> calculateDatesInStatus(String requiredStatus) {
-        TreeSet<LocalDate> datesInCurrentStatus = new TreeSet<>();
-        ZonedDateTime temp = null;
-        for (IssueStatusTransition issueStatusTransition : issue.getIssueStatusTransitions()) {
-            if (temp != null) {
-                datesInCurrentStatus.addAll(DateUtils.getCollectionOfLocalDates(temp, issueStatusTransition.getDate()));
-                temp = null;
-            }
-            if (requiredStatus.equals(issueStatusTransition.getToStatus())) {
-                temp = issueStatusTransition.getDate();
-            }
+    public BitSet getStatusOnDaysMask(LocalDate from, LocalDate to, Set<String> statuses) {
+        BitSet mask = new BitSet();
+        ProjectDictionary dictionary = statusTransitions.getDictionary();
+        for (String status : statuses) {
+            mask.or(getDaysInStatuses().get(dictionary.findStringId(status)).mask(from, to));
         }
-        if (temp != null) {
-            datesInCurrentStatus.addAll(DateUtils.getCollectionOfLocalDates(temp, ZonedDateTime.now(getClock())));
+        return mask;
+    }
+
+    public boolean isStatusOnDay(LocalDate date, Set<String> statuses) {
+        long epochDay = date.toEpochDay();
+        ProjectDictionary dictionary = statusTransitions.getDictionary();
+        for (String status : statuses) {
+            if (getDaysInStatuses().get(dictionary.findStringId(status)).contains(epochDay)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        return datesInCurrentStatus;
+    /**
+     * Issue is in status on every day (in system default zone) from the day
+     * it transitioned to it until the day it transitioned further, both
+     * inclusive.
+     */
+    private StatusDayIntervals calculateDaysInStatuses() {
+        Map<Integer, DayIntervals.Builder> builders = new HashMap<>();
+        for (int i = 0; i < statusTransitions.size(); i++) {
+            int statusId = statusTransitions.getToStatusId(i);
+            if (statusId < 0) {
+                continue;
+            }
+            long end = i + 1 < statusTransitions.size() ? statusTransitions.getEpochMilli(i + 1) : getClock().millis();
+            builders.computeIfAbsent(statusId, id -> new DayIntervals.Builder())
+                    .add(toEpochDay(statusTransitions.getEpochMilli(i)), toEpochDay(end));
+        }
+        return new StatusDayIntervals(builders);
     }
 
-    private Set<LocalDate> calculateDatesWhenAllDayBlocked() {
-        Set<LocalDate> blockedDays = new HashSet<>();
+    private static long toEpochDay(long epochMilli) {
+        return Instant.ofEpochMilli(epochMilli).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
 
-        ZonedDateTime temp = null;
-        for (IssueBlockedTransition issueBlockedTransition : issue.getIssueBlockedTransitions()) {
-            if (!issueBlockedTransition.isBlocked() ) {
-                if(temp==null) {
-                    System.out.println("zonk");
+    /**
+     * Issue is blocked entire day on days between the day it got blocked and
+     * the day it got unblocked, both exclusive, in system default zone. Issue
+     * which is still blocked is blocked today as well.
+     */
+    private DayIntervals calculateDaysWhenAllDayBlocked() {
+        DayIntervals.Builder blockedDays = new DayIntervals.Builder();
+
+        long temp = 0;
+        boolean blocked = false;
+        for (int i = 0; i < blockedTransitions.size(); i++) {
+            if (!isBlocked(i)) {
+                if (!blocked) {
+                    LOG.warn("Issue {} got unblocked at {} without being blocked since {}, ignoring this interval", issueKey,
+                            Instant.ofEpochMilli(blockedTransitions.getEpochMilli(i)),
+                            i > 0 ? Instant.ofEpochMilli(blockedTransitions.getEpochMilli(i - 1)) : "its creation");
+                } else {
+                    blockedDays.add(toEpochDay(temp) + 1, toEpochDay(blockedTransitions.getEpochMilli(i)) - 1);
                 }
-                blockedDays.addAll(DateUtils.getCollectionOfLocalDatesBetweenDateExclusive(temp, issueBlockedTransition.getDate()));
-                temp = null;
-            } else if (temp == null) {
-                temp = issueBlockedTransition.getDate();
+                blocked = false;
+            } else if (!blocked) {
+                temp = blockedTransitions.getEpochMilli(i);
+                blocked = true;
             }
         }
-        if (temp != null) {
-            blockedDays.addAll(DateUtils.getCollectionOfLocalDatesBetweenDateExclusive(temp, ZonedDateTime.now(getClock())));
-            blockedDays.add(LocalDate.now(getClock()));
+        if (blocked) {
+            blockedDays.add(toEpochDay(temp) + 1, toEpochDay(getClock().millis()) - 1);
+            long today = LocalDate.now(getClock()).toEpochDay();
+            blockedDays.add(today, today);
         }
 
-        return blockedDays;
+        return blockedDays.build();
     }
 
-    private Duration calculateTotalTimeInStatus(IssueData issue, String status) {
-        return calculateTimeInStatus(issue, status, (from, to) -> Duration.between(from, to));
+    /**
+     * Days in statuses kept by status id, sorted for binary search.
+     */
+    private static class StatusDayIntervals {
+
+        private final int[] statusIds;
+        private final DayIntervals[] intervals;
+
+        StatusDayIntervals(Map<Integer, DayIntervals.Builder> builders) {
+            statusIds = builders.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            intervals = new DayIntervals[statusIds.length];
+            for (int i = 0; i < statusIds.length; i++) {
+                intervals[i] = builders.get(statusIds[i]).build();
+            }
+        }
+
+        DayIntervals get(int statusId) {
+            int index = Arrays.binarySearch(statusIds, statusId);
+            return index < 0 ? DayIntervals.EMPTY : intervals[index];
+        }
+    }
+
+    private boolean isBlocked(int blockedTransition) {
+        String toStatus = blockedTransitions.getToStatus(blockedTransition);
+        return toStatus != null && !toStatus.isEmpty();
     }
 
-    private Duration calculateTimeInStatus(IssueData issue, String status, BiFunction<ZonedDateTime, ZonedDateTime, Duration> durationFunction) {
-        ZonedDateTime temp = null;
-        Duration duration = Duration.ZERO;
-        for (IssueStatusTransition issueStatusTransition : issue.getIssueStatusTransitions()) {
-            if (temp != null) {
-                duration = duration.plus(durationFunction.apply(temp, issueStatusTransition.getDate()));
-                temp = null;
+    private Duration calculateTotalTimeInStatus(int statusId) {
+        long temp = 0;
+        boolean inStatus = false;
+        long millis = 0;
+        for (int i = 0; i < statusTransitions.size(); i++) {
+            if (inStatus) {
+                millis += statusTransitions.getEpochMilli(i) - temp;
+                inStatus = false;
             }
-            if (status.equals(issueStatusTransition.getToStatus())) {
-                temp = issueStatusTransition.getDate();
+            if (statusId == statusTransitions.getToStatusId(i)) {
+                temp = statusTransitions.getEpochMilli(i);
+                inStatus = true;
             }
         }
-        if (temp != null) {
-            duration = duration.plus(durationFunction.apply(temp, ZonedDateTime.now(getClock())));
+        Duration duration = Duration.ofMillis(millis);
+        if (inStatus) {
+            duration = duration.plus(Duration.between(Instant.ofEpochMilli(temp), getClock().instant()));
         }
         return duration;
     }
 
     private Map<String, Duration> calculateTimeInStatus() {
-        return issue.getIssueStatusTransitions().stream().map(t -> t.getToStatus()).distinct().collect(
-                () -> new HashMap<>(),
-                (map, status) -> map.put(status, calculateTotalTimeInStatus(issue, status)),
-                Map::putAll);
+        Map<String, Duration> result = new HashMap<>();
+        for (int i = 0; i < statusTransitions.size(); i++) {
+            int statusId = statusTransitions.getToStatusId(i);
+            String status = statusTransitions.getToStatus(i);
+            if (!result.containsKey(status)) {
+                result.put(status, calculateTotalTimeInStatus(statusId));
+            }
+        }
+        return Collections.unmodifiableMap(result);
     }
 }
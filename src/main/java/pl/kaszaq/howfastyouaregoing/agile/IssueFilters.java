@@ -0,0 +1,144 @@
+package pl.kaszaq.howfastyouaregoing.agile;
+
+import com.google.common.collect.ImmutableSet;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Counterparts of {@link IssuePredicates} returning {@link IssueCriteria}
+ * which can be inspected and answered with project indexes. They can be
+ * mixed with plain predicates, for instance
+ * {@code isType("Bug").and(issue -> issue.getSummary().contains("crash"))}.
+ */
+public class IssueFilters {
+
+    public static IssueCriteria isType(String... acceptableTypes) {
+        return isType(ImmutableSet.copyOf(acceptableTypes));
+    }
+
+    public static IssueCriteria isType(Set<String> acceptableTypes) {
+        return new IssueCriteria.Indexed("type", acceptableTypes, IssueIndex::withType,
+                issue -> acceptableTypes.contains(issue.getType()));
+    }
+
+    public static IssueCriteria isEpic() {
+        return isType("Epic");
+    }
+
+    public static IssueCriteria inStatus(String... statusNames) {
+        return inStatus(ImmutableSet.copyOf(statusNames));
+    }
+
+    public static IssueCriteria inStatus(Set<String> allowedStatuses) {
+        return new IssueCriteria.Indexed("status", allowedStatuses, IssueIndex::inStatus,
+                issue -> allowedStatuses.contains(issue.getStatus()));
+    }
+
+    public static IssueCriteria inResolution(String... resolutions) {
+        return inResolution(ImmutableSet.copyOf(resolutions));
+    }
+
+    public static IssueCriteria inResolution(Set<String> allowedResolutions) {
+        return new IssueCriteria.Indexed("resolution", allowedResolutions, IssueIndex::inResolution,
+                issue -> issue.getResolution() != null && allowedResolutions.contains(issue.getResolution()));
+    }
+
+    public static IssueCriteria reportedBy(String... reporters) {
+        return reportedBy(ImmutableSet.copyOf(reporters));
+    }
+
+    public static IssueCriteria reportedBy(Set<String> allowedReporters) {
+        return new IssueCriteria.Indexed("reporter", allowedReporters, IssueIndex::reportedBy,
+                issue -> issue.getCreator() != null && allowedReporters.contains(issue.getCreator()));
+    }
+
+    public static IssueCriteria hasParent(String... parentKeys) {
+        return hasParent(ImmutableSet.copyOf(parentKeys));
+    }
+
+    public static IssueCriteria hasParent(Set<String> parentKeys) {
+        return new IssueCriteria.Indexed("parent", parentKeys, IssueIndex::withParent,
+                issue -> issue.getParentIssueKey() != null && parentKeys.contains(issue.getParentIssueKey()));
+    }
+
+    public static IssueCriteria hasAnyLabels(String... labels) {
+        return hasAnyLabels(ImmutableSet.copyOf(labels));
+    }
+
+    public static IssueCriteria hasAnyLabels(Set<String> requiredLabels) {
+        return new IssueCriteria.Indexed("anyLabel", requiredLabels, IssueIndex::withAnyLabel,
+                issue -> !Collections.disjoint(issue.getLabels(), requiredLabels));
+    }
+
+    public static IssueCriteria hasAllLabels(String... labels) {
+        return hasAllLabels(ImmutableSet.copyOf(labels));
+    }
+
+    public static IssueCriteria hasAllLabels(Set<String> requiredLabels) {
+        return new IssueCriteria.Indexed("allLabels", requiredLabels, IssueIndex::withAllLabels,
+                issue -> issue.getLabels().containsAll(requiredLabels));
+    }
+
+    public static IssueCriteria hasAnyComponents(String... components) {
+        return hasAnyComponents(ImmutableSet.copyOf(components));
+    }
+
+    public static IssueCriteria hasAnyComponents(Set<String> requiredComponents) {
+        return new IssueCriteria.Indexed("anyComponent", requiredComponents, IssueIndex::withAnyComponent,
+                issue -> !Collections.disjoint(issue.getComponents(), requiredComponents));
+    }
+
+    public static IssueCriteria hasAllComponents(String... components) {
+        return hasAllComponents(ImmutableSet.copyOf(components));
+    }
+
+    public static IssueCriteria hasAllComponents(Set<String> requiredComponents) {
+        return new IssueCriteria.Indexed("allComponents", requiredComponents, IssueIndex::withAllComponents,
+                issue -> issue.getComponents().containsAll(requiredComponents));
+    }
+
+    public static IssueCriteria isSubtask() {
+        return new IssueCriteria.Indexed("subtask", Collections.emptySet(), (index, values) -> index.subtasks(),
+                Issue::isSubtask);
+    }
+
+    public static IssueCriteria hasSubtasks() {
+        return new IssueCriteria.Matching("hasSubtasks", issue -> !issue.getSubtaskKeys().isEmpty(), IssueCriteria.MATCHING_COST);
+    }
+
+    public static IssueCriteria inStatusOnDay(LocalDate date, String... statusNames) {
+        Set<String> allowedStatuses = ImmutableSet.copyOf(statusNames);
+        return new IssueCriteria.Matching("statusOnDay" + allowedStatuses + "@" + date,
+                issue -> issue.isStatusOnDay(date, allowedStatuses), IssueCriteria.MATCHING_COST);
+    }
+
+    public static IssueCriteria isBlockedEntireDay(LocalDate date) {
+        return new IssueCriteria.Matching("blockedEntireDay@" + date,
+                issue -> issue.isBlockedEntireDay(date), IssueCriteria.MATCHING_COST);
+    }
+
+    /**
+     * Wraps any predicate, it is evaluated issue by issue.
+     */
+    public static IssueCriteria matching(String name, Predicate<Issue> predicate) {
+        return new IssueCriteria.Matching(name, predicate, IssueCriteria.MATCHING_COST);
+    }
+
+    @SafeVarargs
+    public static IssueCriteria and(Predicate<? super Issue>... predicates) {
+        return new IssueCriteria.And(Arrays.stream(predicates).map(IssueCriteria::of).collect(Collectors.toList()));
+    }
+
+    @SafeVarargs
+    public static IssueCriteria or(Predicate<? super Issue>... predicates) {
+        return new IssueCriteria.Or(Arrays.stream(predicates).map(IssueCriteria::of).collect(Collectors.toList()));
+    }
+
+    public static IssueCriteria not(Predicate<? super Issue> predicate) {
+        return IssueCriteria.of(predicate).negate();
+    }
+}
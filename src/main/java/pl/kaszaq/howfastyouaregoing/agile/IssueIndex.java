@@ -0,0 +1,159 @@
+package pl.kaszaq.howfastyouaregoing.agile;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import lombok.Getter;
+
+/**
+ * Secondary indexes of project issues. Each issue gets dense ordinal (its
+ * position in {@link AgileProject#getAllIssues()}) and every index maps value
+ * of an attribute to set of ordinals of issues having it. Indexes are built
+ * lazily, on first use. Returned sets are always new instances and may be
+ * modified by caller.
+ */
+final class IssueIndex {
+
+    private final Issue[] issues;
+
+    @Getter(lazy = true)
+    private final Map<String, BitSet> byType = index(issue -> single(issue.getType()));
+    @Getter(lazy = true)
+    private final Map<String, BitSet> byStatus = index(issue -> single(issue.getStatus()));
+    @Getter(lazy = true)
+    private final Map<String, BitSet> byResolution = index(issue -> single(issue.getResolution()));
+    @Getter(lazy = true)
+    private final Map<String, BitSet> byCreator = index(issue -> single(issue.getCreator()));
+    @Getter(lazy = true)
+    private final Map<String, BitSet> byParent = index(issue -> single(issue.getParentIssueKey()));
+    @Getter(lazy = true)
+    private final Map<String, BitSet> byLabel = index(Issue::getLabels);
+    @Getter(lazy = true)
+    private final Map<String, BitSet> byComponent = index(Issue::getComponents);
+    @Getter(lazy = true)
+    private final BitSet subtasks = matching(Issue::isSubtask);
+
+    IssueIndex(Collection<Issue> issues) {
+        this.issues = issues.toArray(new Issue[issues.size()]);
+    }
+
+    int size() {
+        return issues.length;
+    }
+
+    Issue getIssue(int ordinal) {
+        return issues[ordinal];
+    }
+
+    BitSet all() {
+        BitSet all = new BitSet(issues.length);
+        all.set(0, issues.length);
+        return all;
+    }
+
+    BitSet withType(Set<String> types) {
+        return anyOf(getByType(), types);
+    }
+
+    BitSet inStatus(Set<String> statuses) {
+        return anyOf(getByStatus(), statuses);
+    }
+
+    BitSet inResolution(Set<String> resolutions) {
+        return anyOf(getByResolution(), resolutions);
+    }
+
+    BitSet reportedBy(Set<String> creators) {
+        return anyOf(getByCreator(), creators);
+    }
+
+    BitSet withParent(Set<String> parentKeys) {
+        return anyOf(getByParent(), parentKeys);
+    }
+
+    BitSet withAnyLabel(Set<String> labels) {
+        return anyOf(getByLabel(), labels);
+    }
+
+    BitSet withAllLabels(Set<String> labels) {
+        return allOf(getByLabel(), labels);
+    }
+
+    BitSet withAnyComponent(Set<String> components) {
+        return anyOf(getByComponent(), components);
+    }
+
+    BitSet withAllComponents(Set<String> components) {
+        return allOf(getByComponent(), components);
+    }
+
+    BitSet subtasks() {
+        return (BitSet) getSubtasks().clone();
+    }
+
+    /**
+     * Evaluates predicate on issues from given set only.
+     */
+    BitSet filter(BitSet candidates, Predicate<Issue> predicate) {
+        BitSet result = new BitSet(issues.length);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (predicate.test(issues[i])) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    private BitSet matching(Predicate<Issue> predicate) {
+        return filter(all(), predicate);
+    }
+
+    private static BitSet anyOf(Map<String, BitSet> index, Set<String> values) {
+        BitSet result = new BitSet();
+        for (String value : values) {
+            BitSet issuesWithValue = index.get(value);
+            if (issuesWithValue != null) {
+                result.or(issuesWithValue);
+            }
+        }
+        return result;
+    }
+
+    private BitSet allOf(Map<String, BitSet> index, Set<String> values) {
+        BitSet result = all();
+        for (String value : values) {
+            BitSet issuesWithValue = index.get(value);
+            if (issuesWithValue == null) {
+                return new BitSet();
+            }
+            result.and(issuesWithValue);
+        }
+        return result;
+    }
+
+    private Map<String, BitSet> index(Function<Issue, List<String>> values) {
+        Map<String, BitSet> index = new HashMap<>();
+        for (int i = 0; i < issues.length; i++) {
+            List<String> issueValues = values.apply(issues[i]);
+            if (issueValues == null) {
+                continue;
+            }
+            for (String value : issueValues) {
+                if (value != null) {
+                    index.computeIfAbsent(value, v -> new BitSet(issues.length)).set(i);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    private static List<String> single(String value) {
+        return value == null ? null : Collections.singletonList(value);
+    }
+}
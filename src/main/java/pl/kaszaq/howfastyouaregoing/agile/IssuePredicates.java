@@ -114,7 +114,7 @@ public class IssuePredicates {
     }
 
     public static Predicate<Issue> isBlockedEntireDay(LocalDate date) {
-        return issue -> issue.getAllDayBlockedDays().contains(date);
+        return issue -> issue.isBlockedEntireDay(date);
     }
 
 }
@@ -0,0 +1,160 @@
+package pl.kaszaq.howfastyouaregoing.agile;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Query over issues of a project answered with project indexes instead of
+ * scanning all issues. Each method narrows the query (criteria are joined
+ * with "and") and returns new query, queries can be combined with
+ * {@link #or(IssueQuery)} and {@link #not()}. Criteria match the same issues
+ * as corresponding {@link IssuePredicates}.
+ *
+ * <pre>
+ * project.query().isType("Story", "Bug").inStatus("Done").hasAnyLabels("Backend").getIssues();
+ * </pre>
+ */
+public class IssueQuery {
+
+    private final IssueIndex index;
+    private final BitSet matching;
+
+    IssueQuery(IssueIndex index) {
+        this(index, index.all());
+    }
+
+    private IssueQuery(IssueIndex index, BitSet matching) {
+        this.index = index;
+        this.matching = matching;
+    }
+
+    public IssueQuery isType(String... types) {
+        return isType(ImmutableSet.copyOf(types));
+    }
+
+    public IssueQuery isType(Set<String> types) {
+        return and(index.withType(types));
+    }
+
+    public IssueQuery inStatus(String... statuses) {
+        return inStatus(ImmutableSet.copyOf(statuses));
+    }
+
+    public IssueQuery inStatus(Set<String> statuses) {
+        return and(index.inStatus(statuses));
+    }
+
+    public IssueQuery inResolution(String... resolutions) {
+        return inResolution(ImmutableSet.copyOf(resolutions));
+    }
+
+    public IssueQuery inResolution(Set<String> resolutions) {
+        return and(index.inResolution(resolutions));
+    }
+
+    public IssueQuery reportedBy(String... reporters) {
+        return reportedBy(ImmutableSet.copyOf(reporters));
+    }
+
+    public IssueQuery reportedBy(Set<String> reporters) {
+        return and(index.reportedBy(reporters));
+    }
+
+    public IssueQuery hasParent(String... parentKeys) {
+        return hasParent(ImmutableSet.copyOf(parentKeys));
+    }
+
+    public IssueQuery hasParent(Set<String> parentKeys) {
+        return and(index.withParent(parentKeys));
+    }
+
+    public IssueQuery hasAnyLabels(String... labels) {
+        return hasAnyLabels(ImmutableSet.copyOf(labels));
+    }
+
+    public IssueQuery hasAnyLabels(Set<String> labels) {
+        return and(index.withAnyLabel(labels));
+    }
+
+    public IssueQuery hasAllLabels(String... labels) {
+        return hasAllLabels(ImmutableSet.copyOf(labels));
+    }
+
+    public IssueQuery hasAllLabels(Set<String> labels) {
+        return and(index.withAllLabels(labels));
+    }
+
+    public IssueQuery hasAnyComponents(String... components) {
+        return hasAnyComponents(ImmutableSet.copyOf(components));
+    }
+
+    public IssueQuery hasAnyComponents(Set<String> components) {
+        return and(index.withAnyComponent(components));
+    }
+
+    public IssueQuery hasAllComponents(String... components) {
+        return hasAllComponents(ImmutableSet.copyOf(components));
+    }
+
+    public IssueQuery hasAllComponents(Set<String> components) {
+        return and(index.withAllComponents(components));
+    }
+
+    public IssueQuery isSubtask() {
+        return and(index.subtasks());
+    }
+
+    /**
+     * Narrows query with any predicate. {@link IssueCriteria} are answered
+     * with indexes where possible, other predicates are evaluated only on
+     * issues matching query so far.
+     */
+    public IssueQuery filter(Predicate<Issue> predicate) {
+        return new IssueQuery(index, IssueCriteria.of(predicate).evaluate(index, matching));
+    }
+
+    public IssueQuery or(IssueQuery other) {
+        checkSameProject(other);
+        BitSet result = (BitSet) matching.clone();
+        result.or(other.matching);
+        return new IssueQuery(index, result);
+    }
+
+    public IssueQuery not() {
+        BitSet result = (BitSet) matching.clone();
+        result.flip(0, index.size());
+        return new IssueQuery(index, result);
+    }
+
+    public int count() {
+        return matching.cardinality();
+    }
+
+    public List<Issue> getIssues() {
+        List<Issue> issues = new ArrayList<>(count());
+        for (int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i + 1)) {
+            issues.add(index.getIssue(i));
+        }
+        return issues;
+    }
+
+    public Stream<Issue> stream() {
+        return matching.stream().mapToObj(index::getIssue);
+    }
+
+    private IssueQuery and(BitSet issues) {
+        issues.and(matching);
+        return new IssueQuery(index, issues);
+    }
+
+    private void checkSameProject(IssueQuery other) {
+        if (other.index != index) {
+            throw new IllegalArgumentException("Queries of different projects cannot be combined");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package pl.kaszaq.howfastyouaregoing.agile;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * Compact form of list of transitions of an issue. Dates are kept as epoch
+ * milliseconds (precision in which jira provides them) with id of their
+ * zone, users and statuses as ids from {@link ProjectDictionary}. Transition
+ * objects are created only when accessed through one of list views.
+ */
+final class IssueTransitions {
+
+    private static final long[] NO_DATES = new long[0];
+    private static final int[] NO_IDS = new int[0];
+
+    private final ProjectDictionary dictionary;
+    private final long[] dates;
+    private final int[] zones;
+    private final int[] users;
+    private final int[] fromStatuses;
+    private final int[] toStatuses;
+
+    private IssueTransitions(ProjectDictionary dictionary, int size) {
+        this.dictionary = dictionary;
+        this.dates = size == 0 ? NO_DATES : new long[size];
+        this.zones = size == 0 ? NO_IDS : new int[size];
+        this.users = size == 0 ? NO_IDS : new int[size];
+        this.fromStatuses = size == 0 ? NO_IDS : new int[size];
+        this.toStatuses = size == 0 ? NO_IDS : new int[size];
+    }
+
+    static IssueTransitions ofStatusTransitions(List<IssueStatusTransition> transitions, ProjectDictionary dictionary) {
+        return of(transitions, dictionary, IssueStatusTransition::getUser, IssueStatusTransition::getDate,
+                IssueStatusTransition::getFromStatus, IssueStatusTransition::getToStatus);
+    }
+
+    static IssueTransitions ofBlockedTransitions(List<IssueBlockedTransition> transitions, ProjectDictionary dictionary) {
+        return of(transitions, dictionary, IssueBlockedTransition::getUser, IssueBlockedTransition::getDate,
+                IssueBlockedTransition::getFromStatus, IssueBlockedTransition::getToStatus);
+    }
+
+    private static <T> IssueTransitions of(List<T> transitions, ProjectDictionary dictionary,
+            Function<T, String> user, Function<T, ZonedDateTime> date, Function<T, String> fromStatus, Function<T, String> toStatus) {
+        IssueTransitions result = new IssueTransitions(dictionary, transitions == null ? 0 : transitions.size());
+        for (int i = 0; i < result.size(); i++) {
+            T transition = transitions.get(i);
+            ZonedDateTime transitionDate = date.apply(transition);
+            result.dates[i] = transitionDate.toInstant().toEpochMilli();
+            result.zones[i] = dictionary.getZoneId(transitionDate.getZone());
+            result.users[i] = dictionary.getStringId(user.apply(transition));
+            result.fromStatuses[i] = dictionary.getStringId(fromStatus.apply(transition));
+            result.toStatuses[i] = dictionary.getStringId(toStatus.apply(transition));
+        }
+        return result;
+    }
+
+    int size() {
+        return dates.length;
+    }
+
+    long getEpochMilli(int index) {
+        return dates[index];
+    }
+
+    ZonedDateTime getDate(int index) {
+        return Instant.ofEpochMilli(dates[index]).atZone(dictionary.getZone(zones[index]));
+    }
+
+    String getUser(int index) {
+        return dictionary.getString(users[index]);
+    }
+
+    String getFromStatus(int index) {
+        return dictionary.getString(fromStatuses[index]);
+    }
+
+    int getToStatusId(int index) {
+        return toStatuses[index];
+    }
+
+    String getToStatus(int index) {
+        return dictionary.getString(toStatuses[index]);
+    }
+
+    ProjectDictionary getDictionary() {
+        return dictionary;
+    }
+
+    List<IssueStatusTransition> asStatusTransitions() {
+        return new TransitionsView<>(i -> new IssueStatusTransition(getUser(i), getDate(i), getFromStatus(i), getToStatus(i)));
+    }
+
+    List<IssueBlockedTransition> asBlockedTransitions() {
+        return new TransitionsView<>(i -> new IssueBlockedTransition(getUser(i), getDate(i), getFromStatus(i), getToStatus(i)));
+    }
+
+    private class TransitionsView<T> extends AbstractList<T> implements RandomAccess {
+
+        private final Function<Integer, T> factory;
+
+        TransitionsView(Function<Integer, T> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+            }
+            return factory.apply(index);
+        }
+
+        @Override
+        public int size() {
+            return IssueTransitions.this.size();
+        }
+    }
+}
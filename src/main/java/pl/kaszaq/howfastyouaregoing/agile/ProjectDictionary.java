@@ -0,0 +1,99 @@
+package pl.kaszaq.howfastyouaregoing.agile;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns int ids to values repeating across issues of a project (statuses,
+ * users, zones), so that issues can keep ids instead of references to
+ * objects. Ids are never reused nor removed. Reads do not lock, new values
+ * are added under lock.
+ */
+final class ProjectDictionary {
+
+    private final Values<String> strings = new Values<>(new String[64]);
+    private final Values<ZoneId> zones = new Values<>(new ZoneId[4]);
+
+    /**
+     * Id of given value, value is added if it was not known yet. Null is
+     * always represented by -1.
+     */
+    int getStringId(String value) {
+        return strings.getId(value);
+    }
+
+    /**
+     * Id of given value or -1 if value is not known.
+     */
+    int findStringId(String value) {
+        return strings.findId(value);
+    }
+
+    String getString(int id) {
+        return strings.getValue(id);
+    }
+
+    int getZoneId(ZoneId zone) {
+        return zones.getId(zone);
+    }
+
+    ZoneId getZone(int id) {
+        return zones.getValue(id);
+    }
+
+    int size() {
+        return strings.size;
+    }
+
+    private static class Values<T> {
+
+        private final Map<T, Integer> ids = new ConcurrentHashMap<>();
+        private volatile T[] values;
+        private volatile int size;
+
+        Values(T[] values) {
+            this.values = values;
+        }
+
+        int getId(T value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = add(value);
+            }
+            return id;
+        }
+
+        int findId(T value) {
+            if (value == null) {
+                return -1;
+            }
+            return ids.getOrDefault(value, -1);
+        }
+
+        T getValue(int id) {
+            return id < 0 ? null : values[id];
+        }
+
+        private synchronized int add(T value) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            T[] newValues = values;
+            if (size == newValues.length) {
+                newValues = Arrays.copyOf(newValues, size * 2);
+            }
+            newValues[size] = value;
+            // value is published to readers of the array before its id is
+            values = newValues;
+            size = size + 1;
+            ids.put(value, size - 1);
+            return size - 1;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package pl.kaszaq.howfastyouaregoing.agile;
+
+/**
+ * Format in which {@link CachingAgileProjectProvider} stores project files.
+ * Project file in the other format is still read when there is no file in
+ * selected one, so switching format does not require downloading project
+ * again.
+ */
+public enum ProjectFileFormat {
+    JSON(".json"),
+    /**
+     * Compact binary form, considerably faster to load than json.
+     */
+    BINARY(".bin");
+
+    private final String extension;
+
+    private ProjectFileFormat(String extension) {
+        this.extension = extension;
+    }
+
+    String getExtension() {
+        return extension;
+    }
+}
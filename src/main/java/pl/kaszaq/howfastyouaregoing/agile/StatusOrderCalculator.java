@@ -17,108 +17,297 @@ package pl.kaszaq.howfastyouaregoing.agile;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
-import static java.util.stream.Collectors.toList;
+import java.util.Set;
+import java.util.stream.IntStream;
 import lombok.extern.slf4j.Slf4j;
 import static pl.kaszaq.howfastyouaregoing.clock.HFYAGClock.getClock;
 
+/**
+ * Calculates probable order of statuses from counts of transitions between
+ * them. Counts are kept in status by status table and updated with issues
+ * which changed since previous calculation (compared by update date), so
+ * calculator may be reused for next versions of the same project loaded with
+ * the same status mapping.
+ *
+ * Order depends on counts only, equal counts are resolved by status name, so
+ * calculator updated with changed issues gives the same order as a new one.
+ * Every project has its own calculator, next version of the project starts
+ * with a {@link #copy()} of it.
+ */
 @Slf4j
 public class StatusOrderCalculator {
 
-    static List<String> getStatusOrder(Collection<Issue> issues) {
-        Map<Optional<String>, Map<String, Long>> recentTransitions = countRecentTransitions(issues);
-        Map<Optional<String>, Map<String, Long>> transitions = countAllTransitions(issues);
-        LOG.debug("Transitions {}", transitions);
+    private static final int NULL_STATUS = 0;
+
+    private final Map<String, String> statusMappings;
+    private final Set<String> validStatuses;
+    private final Map<String, Integer> statusIds = new HashMap<>();
+    private final List<String> statuses = new ArrayList<>();
+    private final TransitionsCounts allTransitions = new TransitionsCounts();
+    private final TransitionsCounts recentTransitions = new TransitionsCounts();
+    private final Map<String, CountedIssue> countedIssues = new HashMap<>();
+    private ZonedDateTime recentAfter;
+
+    StatusOrderCalculator(Map<String, String> statusMappings, Set<String> validStatuses) {
+        this.statusMappings = statusMappings;
+        this.validStatuses = validStatuses;
+        statuses.add(null);
+    }
 
-        Map<String, String> mapping = calculateMapping(recentTransitions, transitions);
+    private StatusOrderCalculator(StatusOrderCalculator other) {
+        this.statusMappings = other.statusMappings;
+        this.validStatuses = other.validStatuses;
+        statusIds.putAll(other.statusIds);
+        statuses.addAll(other.statuses);
+        allTransitions.addAll(other.allTransitions);
+        recentTransitions.addAll(other.recentTransitions);
+        // transitions arrays are never modified, so they are shared
+        other.countedIssues.forEach((key, countedIssue) -> countedIssues.put(key,
+                new CountedIssue(countedIssue.updated, countedIssue.transitions, countedIssue.recent)));
+        recentAfter = other.recentAfter;
+    }
 
-        LOG.debug("Mapping {}", mapping);
+    /**
+     * @return calculator with the same counts, updated independently of this
+     * one, for next version of the project
+     */
+    synchronized StatusOrderCalculator copy() {
+        return new StatusOrderCalculator(this);
+    }
 
-        String tempStatus = null;
-        LinkedList<String> statusOrder = new LinkedList<>(); //linkedhashset?
-        do {
-            tempStatus = mapping.get(tempStatus);
-            if (tempStatus != null && !statusOrder.contains(tempStatus)) {
-                statusOrder.add(tempStatus);
-            } else {
-                tempStatus = null;
+    /**
+     * @return true if transitions of issues remapped with the same mappings
+     * to the same statuses were counted
+     */
+    boolean isCountedWith(Map<String, String> statusMappings, Set<String> validStatuses) {
+        return this.statusMappings.equals(statusMappings) && this.validStatuses.equals(validStatuses);
+    }
+
+    synchronized List<String> getStatusOrder(Collection<Issue> issues) {
+        update(issues);
+
+        int[] sortedStatuses = getStatusesSortedByName();
+        TransitionsCounts mappingTransitions = recentTransitions.isEmpty() ? allTransitions : recentTransitions;
+        int[] mapping = calculateMapping(mappingTransitions, sortedStatuses);
+        if (LOG.isDebugEnabled()) {
+            Map<String, String> loggedMapping = new HashMap<>();
+            for (int from = 0; from < mapping.length; from++) {
+                if (mapping[from] != NULL_STATUS) {
+                    loggedMapping.put(statuses.get(from), statuses.get(mapping[from]));
+                }
             }
-        } while (tempStatus != null);
-
-//        while (statusOrder.size() < mapping.size() - 1) {
-//            for (Map.Entry<String, String> entry : mapping.entrySet()) {
-//                if (entry.getKey()!=null && !statusOrder.contains(entry.getKey()) && statusOrder.contains(entry.getValue())) {
-//                    int pos = statusOrder.indexOf(entry.getValue());
-//                    statusOrder.add(pos, entry.getKey());
-//                }
-//            }
-//        }
-
-        List<String> toStatuses = calculateAllToStatuses(transitions);
-        for (String status : toStatuses) {
-            if (!statusOrder.contains(status)) {
-                String highestFrom = null;
+            LOG.debug("Mapping {}", loggedMapping);
+        }
+
+        boolean[] inOrder = new boolean[statuses.size()];
+        List<String> statusOrder = new ArrayList<>();
+        int tempStatus = NULL_STATUS;
+        while (mapping[tempStatus] != NULL_STATUS && !inOrder[mapping[tempStatus]]) {
+            tempStatus = mapping[tempStatus];
+            inOrder[tempStatus] = true;
+            statusOrder.add(statuses.get(tempStatus));
+        }
+
+        for (int status : sortedStatuses) {
+            if (!inOrder[status] && allTransitions.hasTransitionsTo(status)) {
+                int highestFrom = NULL_STATUS;
                 long val = 0L;
-                for (Map.Entry<Optional<String>, Map<String, Long>> entry : transitions.entrySet()) {
-                    Long tempVal = entry.getValue().get(status);
-                    if (tempVal != null && tempVal > val) {
+                for (int from : sortedStatuses) {
+                    long tempVal = allTransitions.getCount(from, status);
+                    if (tempVal > val) {
                         val = tempVal;
-                        highestFrom = entry.getKey().orElse(null);
+                        highestFrom = from;
                     }
                 }
-                final int order = statusOrder.indexOf(highestFrom) + 1;
-                statusOrder.add(order, status);
+                final int order = highestFrom == NULL_STATUS ? 0 : statusOrder.indexOf(statuses.get(highestFrom)) + 1;
+                statusOrder.add(order, statuses.get(status));
+                inOrder[status] = true;
             }
         }
         return statusOrder;
     }
 
-    private static List<String> calculateAllToStatuses(Map<Optional<String>, Map<String, Long>> transitions) {
-        return transitions.values().stream().flatMap(map -> map.keySet().stream()).distinct().collect(toList());
+    private void update(Collection<Issue> issues) {
+        ZonedDateTime currentRecentAfter = LocalDate.now(getClock()).minusMonths(6).atStartOfDay(ZoneId.systemDefault());
+        if (!currentRecentAfter.equals(recentAfter)) {
+            recentAfter = currentRecentAfter;
+            countedIssues.values().forEach(countedIssue -> {
+                boolean recent = countedIssue.updated.isAfter(recentAfter);
+                if (recent && !countedIssue.recent) {
+                    recentTransitions.add(countedIssue.transitions);
+                } else if (!recent && countedIssue.recent) {
+                    recentTransitions.remove(countedIssue.transitions);
+                }
+                countedIssue.recent = recent;
+            });
+        }
+        for (Issue issue : issues) {
+            CountedIssue countedIssue = countedIssues.get(issue.getKey());
+            if (countedIssue == null || !countedIssue.updated.equals(issue.getUpdated())) {
+                if (countedIssue != null) {
+                    remove(countedIssue);
+                }
+                count(issue);
+            }
+        }
+        if (countedIssues.size() > issues.size()) {
+            Set<String> keys = new HashSet<>(issues.size());
+            issues.forEach(issue -> keys.add(issue.getKey()));
+            countedIssues.entrySet().removeIf(entry -> {
+                if (!keys.contains(entry.getKey())) {
+                    remove(entry.getValue());
+                    return true;
+                }
+                return false;
+            });
+        }
     }
 
-    private static Map<String, String> calculateMapping(Map<Optional<String>, Map<String, Long>> recentTransitions, Map<Optional<String>, Map<String, Long>> transitions) {
-        Map<String, String> mapping;
-        if (recentTransitions.isEmpty()) {
-            mapping = calculateMapping(transitions);
-        } else {
-            mapping = calculateMapping(recentTransitions);
+    private void count(Issue issue) {
+        List<IssueStatusTransition> issueTransitions = issue.getIssueStatusTransitions();
+        int[] transitions = new int[issueTransitions.size() * 2];
+        for (int i = 0; i < issueTransitions.size(); i++) {
+            IssueStatusTransition transition = issueTransitions.get(i);
+            transitions[2 * i] = getStatusId(transition.getFromStatus());
+            transitions[2 * i + 1] = getStatusId(transition.getToStatus());
         }
-        return mapping;
+        boolean recent = issue.getUpdated().isAfter(recentAfter);
+        allTransitions.add(transitions);
+        if (recent) {
+            recentTransitions.add(transitions);
+        }
+        countedIssues.put(issue.getKey(), new CountedIssue(issue.getUpdated(), transitions, recent));
     }
 
-    private static Map<Optional<String>, Map<String, Long>> countAllTransitions(Collection<Issue> issues) {
-        return issues.stream()
-                .flatMap(i -> i.getIssueStatusTransitions().stream())
-                .collect(Collectors.groupingBy(i -> Optional.ofNullable(i.getFromStatus()), Collectors.groupingBy(i -> i.getToStatus(), Collectors.counting())));
+    private void remove(CountedIssue countedIssue) {
+        allTransitions.remove(countedIssue.transitions);
+        if (countedIssue.recent) {
+            recentTransitions.remove(countedIssue.transitions);
+        }
     }
 
-    private static Map<Optional<String>, Map<String, Long>> countRecentTransitions(Collection<Issue> issues) {
-        return issues.stream()
-                .filter(IssuePredicates.updatedAfter(LocalDate.now(getClock()).minusMonths(6).atStartOfDay(ZoneId.systemDefault())))
-                .flatMap(i -> i.getIssueStatusTransitions().stream())
-                .collect(Collectors.groupingBy(i -> Optional.ofNullable(i.getFromStatus()), Collectors.groupingBy(i -> i.getToStatus(), Collectors.counting())));
+    private int getStatusId(String status) {
+        if (status == null) {
+            return NULL_STATUS;
+        }
+        return statusIds.computeIfAbsent(status, s -> {
+            statuses.add(s);
+            allTransitions.ensureSize(statuses.size());
+            recentTransitions.ensureSize(statuses.size());
+            return statuses.size() - 1;
+        });
     }
 
-    private static Map<String, String> calculateMapping(Map<Optional<String>, Map<String, Long>> transitions) {
-        Map<String, String> mapping = new HashMap<>();
-        transitions.forEach((k, v) -> {
-            String highestTo = null;
-            Long val = 0l;
-            for (Map.Entry<String, Long> entry : v.entrySet()) {
-                if (val < entry.getValue()) {
-                    val = entry.getValue();
-                    highestTo = entry.getKey();
+    /**
+     * @return ids of statuses ordered by name, no status first
+     */
+    private int[] getStatusesSortedByName() {
+        return IntStream.range(0, statuses.size())
+                .boxed()
+                .sorted(Comparator.comparing(statuses::get, Comparator.nullsFirst(Comparator.<String>naturalOrder())))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * @return most frequent to status for every from status, of equally
+     * frequent the first by name
+     */
+    private int[] calculateMapping(TransitionsCounts transitions, int[] sortedStatuses) {
+        int[] mapping = new int[statuses.size()];
+        for (int from : sortedStatuses) {
+            long val = 0L;
+            for (int to : sortedStatuses) {
+                long count = transitions.getCount(from, to);
+                if (val < count) {
+                    val = count;
+                    mapping[from] = to;
                 }
             }
-            mapping.put(k.orElse(null), highestTo);
-        });
+        }
         return mapping;
     }
+
+    private static class CountedIssue {
+
+        private final ZonedDateTime updated;
+        /**
+         * Pairs of from and to status ids.
+         */
+        private final int[] transitions;
+        private boolean recent;
+
+        CountedIssue(ZonedDateTime updated, int[] transitions, boolean recent) {
+            this.updated = updated;
+            this.transitions = transitions;
+            this.recent = recent;
+        }
+    }
+
+    /**
+     * Counts of transitions from status to status, indexed by status ids.
+     */
+    private static class TransitionsCounts {
+
+        private int size;
+        private long[] counts = new long[0];
+        private long total;
+
+        void ensureSize(int statusesCount) {
+            if (statusesCount > size) {
+                int newSize = Math.max(statusesCount, size * 2);
+                long[] newCounts = new long[newSize * newSize];
+                for (int from = 0; from < size; from++) {
+                    System.arraycopy(counts, from * size, newCounts, from * newSize, size);
+                }
+                counts = newCounts;
+                size = newSize;
+            }
+        }
+
+        void addAll(TransitionsCounts other) {
+            size = other.size;
+            counts = other.counts.clone();
+            total = other.total;
+        }
+
+        void add(int[] transitions) {
+            for (int i = 0; i < transitions.length; i += 2) {
+                counts[transitions[i] * size + transitions[i + 1]]++;
+            }
+            total += transitions.length / 2;
+        }
+
+        void remove(int[] transitions) {
+            for (int i = 0; i < transitions.length; i += 2) {
+                counts[transitions[i] * size + transitions[i + 1]]--;
+            }
+            total -= transitions.length / 2;
+        }
+
+        long getCount(int from, int to) {
+            return counts[from * size + to];
+        }
+
+        boolean hasTransitionsTo(int to) {
+            for (int from = 0; from < size; from++) {
+                if (counts[from * size + to] > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            return total == 0;
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package pl.kaszaq.howfastyouaregoing.agile.grouping;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import pl.kaszaq.howfastyouaregoing.agile.Issue;
+
+/**
+ * Values rolled up from leaf issues below an issue in hierarchy. Issue without
+ * issues below is the only leaf of itself.
+ */
+public class IssueAggregate {
+
+    private int leafsCount;
+    private int doneCount;
+    private final Map<String, Duration> timeInStatus = new HashMap<>();
+
+    IssueAggregate() {
+    }
+
+    static IssueAggregate of(Issue issue, Set<String> doneStatuses) {
+        IssueAggregate aggregate = new IssueAggregate();
+        aggregate.leafsCount = 1;
+        aggregate.doneCount = doneStatuses.contains(issue.getStatus()) ? 1 : 0;
+        aggregate.timeInStatus.putAll(issue.getTimeInStatus());
+        return aggregate;
+    }
+
+    public int getLeafsCount() {
+        return leafsCount;
+    }
+
+    public int getDoneCount() {
+        return doneCount;
+    }
+
+    /**
+     * @return summed time which leaf issues spent in each status
+     */
+    public Map<String, Duration> getTimeInStatus() {
+        return Collections.unmodifiableMap(timeInStatus);
+    }
+
+    public Duration getTimeInStatuses(String... statuses) {
+        Duration duration = Duration.ZERO;
+        for (String status : statuses) {
+            duration = duration.plus(timeInStatus.getOrDefault(status, Duration.ZERO));
+        }
+        return duration;
+    }
+
+    void add(IssueAggregate other) {
+        leafsCount += other.leafsCount;
+        doneCount += other.doneCount;
+        other.timeInStatus.forEach((status, duration) -> timeInStatus.merge(status, duration, Duration::plus));
+    }
+
+    void subtract(IssueAggregate other) {
+        leafsCount -= other.leafsCount;
+        doneCount -= other.doneCount;
+        other.timeInStatus.forEach((status, duration) -> {
+            Duration remaining = timeInStatus.getOrDefault(status, Duration.ZERO).minus(duration);
+            if (remaining.isZero()) {
+                timeInStatus.remove(status);
+            } else {
+                timeInStatus.put(status, remaining);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,126 @@
+package pl.kaszaq.howfastyouaregoing.agile.grouping;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
+import pl.kaszaq.howfastyouaregoing.agile.Issue;
+
+/**
+ * Hierarchy of all issues of grouped projects. Every issue has one node, child
+ * nodes are issues directly above it in hierarchy (parent issue in the same
+ * project, epic of the issue when epic link custom field is given, linked
+ * issues in projects higher in grouping order). Links which
+ * can be reached through other child are removed (transitive reduction),
+ * which is done once per node with sets of issues reachable from children.
+ */
+@Slf4j
+final class IssueHierarchyGraph {
+
+    private static final TypeReference<String> EPIC_LINK_TYPE = new TypeReference<String>() {
+    };
+
+    private final Map<String, AgileProject> issuesProjects = new HashMap<>();
+    private final Map<AgileProject, Set<AgileProject>> parentWithCurrentProjects;
+    private final String epicLinkField;
+    private final Map<String, IssueHierarchyNode> nodes = new HashMap<>();
+    private final Map<IssueHierarchyNode, Integer> ordinals = new HashMap<>();
+    private final Map<IssueHierarchyNode, BitSet> reachableNodes = new HashMap<>();
+
+    IssueHierarchyGraph(List<Set<AgileProject>> projectsGroupingOrder, Map<AgileProject, Set<AgileProject>> parentWithCurrentProjects, String epicLinkField) {
+        this.parentWithCurrentProjects = parentWithCurrentProjects;
+        this.epicLinkField = epicLinkField;
+        projectsGroupingOrder.forEach(projects -> projects.forEach(project
+                -> project.getAllIssues().forEach(issue -> issuesProjects.putIfAbsent(issue.getKey(), project))));
+        projectsGroupingOrder.forEach(projects -> projects.forEach(project
+                -> project.getAllIssues().forEach(this::visit)));
+        // needed only while building
+        ordinals.clear();
+        reachableNodes.clear();
+    }
+
+    IssueHierarchyNode getNode(Issue issue) {
+        IssueHierarchyNode node = nodes.get(issue.getKey());
+        if (node == null) {
+            throw new NoSuchElementException("Issue " + issue.getKey() + " does not belong to any of grouped projects");
+        }
+        return node;
+    }
+
+    /**
+     * Depth first visit, node gets its ordinal when all nodes reachable from
+     * it are visited.
+     *
+     * @return node of the issue or null when issue is being visited, which
+     * means a cycle in hierarchy
+     */
+    private IssueHierarchyNode visit(Issue issue) {
+        IssueHierarchyNode node = nodes.get(issue.getKey());
+        if (node != null) {
+            if (!ordinals.containsKey(node)) {
+                LOG.warn("Cycle in hierarchy of issues at {}, link is ignored", issue.getKey());
+                return null;
+            }
+            return node;
+        }
+        node = new IssueHierarchyNode(issue);
+        nodes.put(issue.getKey(), node);
+
+        Set<IssueHierarchyNode> childNodes = new HashSet<>();
+        for (Issue relatedIssue : getDirectlyParentRelatedIssues(issue)) {
+            IssueHierarchyNode childNode = visit(relatedIssue);
+            if (childNode != null) {
+                childNodes.add(childNode);
+            }
+        }
+        BitSet reachableThroughChildren = new BitSet();
+        childNodes.forEach(childNode -> reachableThroughChildren.or(reachableNodes.get(childNode)));
+        BitSet reachable = (BitSet) reachableThroughChildren.clone();
+        for (IssueHierarchyNode childNode : childNodes) {
+            int childOrdinal = ordinals.get(childNode);
+            reachable.set(childOrdinal);
+            if (!reachableThroughChildren.get(childOrdinal)) {
+                node.link(childNode);
+            }
+        }
+        ordinals.put(node, ordinals.size());
+        reachableNodes.put(node, reachable);
+        return node;
+    }
+
+    private Set<Issue> getDirectlyParentRelatedIssues(Issue issue) {
+        Set<Issue> directlyRelatedIssues = new HashSet<>();
+        AgileProject issueProject = issuesProjects.get(issue.getKey());
+        if (issueProject == null) {
+            throw new NoSuchElementException("Issue " + issue.getKey() + " does not belong to any of grouped projects");
+        }
+        String epicKey = getEpicKey(issue, epicLinkField);
+        parentWithCurrentProjects.get(issueProject).forEach(agileProject -> {
+            if (epicKey != null && agileProject.contains(epicKey)) {
+                directlyRelatedIssues.add(agileProject.getIssue(epicKey));
+            }
+            if (agileProject.contains(issue)) {
+                String parentKey = issue.getParentIssueKey();
+                Issue parent = parentKey == null ? null : agileProject.getIssue(parentKey);
+                if (parent != null) {
+                    directlyRelatedIssues.add(parent);
+                }
+            } else if (issue.getLinkedIssuesKeys() != null) {
+                issue.getLinkedIssuesKeys().stream()
+                        .filter(agileProject::contains)
+                        .forEach(key -> directlyRelatedIssues.add(agileProject.getIssue(key)));
+            }
+        });
+        return directlyRelatedIssues;
+    }
+
+    static String getEpicKey(Issue issue, String epicLinkField) {
+        return epicLinkField == null ? null : issue.get(epicLinkField, EPIC_LINK_TYPE);
+    }
+}
@@ -1,5 +1,6 @@
 package pl.kaszaq.howfastyouaregoing.agile.grouping;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import lombok.Getter;
@@ -14,6 +15,8 @@ public class IssueHierarchyNode {
 
     private final Set<IssueHierarchyNode> childNodes = new HashSet<>();
     private final Issue issue;
+    @Getter(lazy = true)
+    private final Set<Issue> leafsIssues = calculateLeafsIssues();
 
     IssueHierarchyNode(Issue issue) {
         this.issue = issue;
@@ -38,23 +41,17 @@ public class IssueHierarchyNode {
         }
     }
 
-    boolean hasChild(Issue issue) {
-        if (childNodes.stream().filter(cn -> cn.getIssue().equals(issue)).findFirst().isPresent()){
-            return true;
-        } else {
-            return childNodes.stream().filter(cn -> cn.hasChild(issue)).findFirst().isPresent();
-        }
-        
-    }
-
-    public Set<Issue> getLeafsIssues() {
+    /**
+     * Calculated on first call, hierarchy should not be modified afterwards.
+     */
+    private Set<Issue> calculateLeafsIssues() {
         Set<Issue> leafIssues = new HashSet<>();
         if (childNodes.isEmpty()){
             leafIssues.add(issue);
         } else {
             childNodes.forEach(cn -> leafIssues.addAll(cn.getLeafsIssues()));
         }
-        return leafIssues;
+        return Collections.unmodifiableSet(leafIssues);
     }
 
 }
@@ -2,28 +2,44 @@ package pl.kaszaq.howfastyouaregoing.agile.grouping;
 
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.Getter;
 import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
 import pl.kaszaq.howfastyouaregoing.agile.Issue;
 
 /**
+ * Provides hierarchies of issues. Hierarchy of all issues of given projects is
+ * built once, on first use, and not modified afterwards, provider may be
+ * shared between threads.
  *
  * @author michal.kasza
  */
 public class IssueHierarchyNodeProvider {
 
-    Map<Issue, IssueHierarchyNode> issuesHierarchyNodes = new HashMap<>();
-    List<Set<AgileProject>> agileProjectsGroupingOrder;
-    Map<AgileProject, Set<AgileProject>> agileParentWithCurrentProjects;
-    private final Set<AgileProject> allProjects;
+    final List<Set<AgileProject>> agileProjectsGroupingOrder;
+    final Map<AgileProject, Set<AgileProject>> agileParentWithCurrentProjects;
+    final String epicLinkField;
+    @Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final IssueHierarchyGraph graph = new IssueHierarchyGraph(agileProjectsGroupingOrder, agileParentWithCurrentProjects, epicLinkField);
 
     public IssueHierarchyNodeProvider(List<Set<AgileProject>> agileProjectsGroupingOrder) {
+        this(agileProjectsGroupingOrder, null);
+    }
+
+    /**
+     * @param agileProjectsGroupingOrder - projects from the lowest to the
+     * highest in hierarchy
+     * @param epicLinkField - name of custom field with key of epic of the
+     * issue (as parsed with custom fields parsers), issues are linked to their
+     * epics when epic is in the same or higher project
+     */
+    public IssueHierarchyNodeProvider(List<Set<AgileProject>> agileProjectsGroupingOrder, String epicLinkField) {
         this.agileProjectsGroupingOrder = agileProjectsGroupingOrder;
+        this.epicLinkField = epicLinkField;
         agileParentWithCurrentProjects = new HashMap(agileProjectsGroupingOrder.size());
         for (int i = 0; i < agileProjectsGroupingOrder.size(); i++) {
             Set<AgileProject> parentProjects = agileProjectsGroupingOrder.subList(i + 1, agileProjectsGroupingOrder.size())
@@ -35,83 +51,14 @@ public class IssueHierarchyNodeProvider {
                 agileParentWithCurrentProjects.put(project, parentProjectsWithCurrent);
             });
         }
-        this.allProjects = agileProjectsGroupingOrder
-                .stream().flatMap(set -> set.stream()).collect(Collectors.toSet());
     }
 
     public IssueHierarchyNode getHierarchy(Issue issue) {
-        return issuesHierarchyNodes.computeIfAbsent(issue, i -> {
-            IssueHierarchyNode node = createHierarchyNode(i);
-            reduce(node);
-            return node;
-        });
-    }
-
-    private IssueHierarchyNode createHierarchyNode(Issue issue) {
-        Set<Issue> directlyRelatedIssues = getDirectlyParentRelatedIssues(issue);
-        IssueHierarchyNode node = new IssueHierarchyNode(issue);
-        directlyRelatedIssues.forEach((directlyRelatedIssue) -> {
-            node.link(createHierarchyNode(directlyRelatedIssue));
-        });
-
-        return node;
-    }
-
-    private Set<Issue> getDirectlyParentRelatedIssues(Issue issue) {
-        Set<Issue> directlyRelatedIssues = new HashSet<>();
-
-        Set<AgileProject> projectsSet = getParentAndCurrentProjects(issue);
-        projectsSet.forEach((agileProject) -> {
-            if (agileProject.contains(issue)) {
-                checkParentIssue(issue, agileProject)
-                        .ifPresent(i -> directlyRelatedIssues.add(i));
-                checkEpic(issue, agileProject)
-                        .ifPresent(i -> directlyRelatedIssues.add(i));
-            } else {
-                checkLinkedIssues(issue, agileProject)
-                        .ifPresent(issues -> directlyRelatedIssues.addAll(issues));
-            }
-        });
-
-        return directlyRelatedIssues;
-    }
-
-    private Optional<Issue> checkParentIssue(Issue issue, AgileProject agileProject) {
-        return Optional.of(issue).map(Issue::getParentIssueKey).map(key -> agileProject.getIssue(key));
+        return getGraph().getNode(issue);
     }
 
-    private Optional<Issue> checkEpic(Issue issue, AgileProject agileProject) {
-        
-        // TODO: Add support for linking through epics;
-        return Optional.empty();
-    }
-
-    private Optional<Set<Issue>> checkLinkedIssues(Issue issue, AgileProject agileProject) {
-        List<String> issueLinks = issue.getLinkedIssuesKeys();
-        if (issueLinks != null) {
-            return Optional.of(issueLinks.stream().filter(key -> agileProject.contains(key)).map(issueId -> agileProject.getIssue(issueId)).collect(Collectors.toSet()));
-        }
-        return Optional.empty();
-    }
-
-    private Set<AgileProject> getParentAndCurrentProjects(Issue issue) {
-        AgileProject issueAgileProject = getIssueProject(issue);
-        return agileParentWithCurrentProjects.get(issueAgileProject);
-    }
-
-    private AgileProject getIssueProject(Issue issue) {
-        return allProjects.stream().filter(project -> project.contains(issue)).findFirst().get();
-    }
-
-    private void reduce(IssueHierarchyNode node) {
-        Iterator<IssueHierarchyNode> childNodesIterator = node.getChildNodes().iterator();
-        while (childNodesIterator.hasNext()) {
-            IssueHierarchyNode childNode = childNodesIterator.next();
-            if (node.getChildNodes().stream().filter(n -> n.hasChild(childNode.getIssue())).findFirst().isPresent()) {
-                childNodesIterator.remove();
-            }
-        }
-        node.getChildNodes().forEach(n -> reduce(n));
+    String getEpicKey(Issue issue) {
+        return IssueHierarchyGraph.getEpicKey(issue, epicLinkField);
     }
 
 }
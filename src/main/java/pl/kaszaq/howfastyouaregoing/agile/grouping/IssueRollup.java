@@ -0,0 +1,221 @@
+package pl.kaszaq.howfastyouaregoing.agile.grouping;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProjectDataObserver;
+import pl.kaszaq.howfastyouaregoing.agile.Issue;
+import pl.kaszaq.howfastyouaregoing.agile.IssueData;
+import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectData;
+
+/**
+ * Values of leaf issues (count, done count, time in status) rolled up to every
+ * issue above them in hierarchy - parent issues, epics and linked issues of
+ * higher projects, see {@link IssueHierarchyNodeProvider}. Leaf is counted
+ * once for an issue even when it can be reached from it by many paths.
+ *
+ * Pass it as observer when loading projects, on
+ * {@link #update(java.util.List)} values of changed leaf issues are
+ * subtracted from issues above them and added again, new issues not related
+ * to other issues are added as leafs. Rollup is rebuilt when issues are
+ * removed, their hierarchy changed or whole project was reloaded.
+ *
+ * <pre>
+ * IssueRollup rollup = new IssueRollup(doneStatuses, "epicLink");
+ * rollup.update(ImmutableList.of(ImmutableSet.of(provider.loadProject("AWW", configuration, rollup).get())));
+ * rollup.getAggregate(epic).getDoneCount();
+ * </pre>
+ *
+ * Time in current status of a leaf issue is counted until the moment it was
+ * last changed or rollup rebuilt.
+ */
+public class IssueRollup implements AgileProjectDataObserver {
+
+    private final Set<String> doneStatuses;
+    private final String epicLinkField;
+    private final Set<String> changedIssues = new HashSet<>();
+    private final Map<String, Issue> issues = new HashMap<>();
+    private final Map<String, IssueAggregate> aggregates = new HashMap<>();
+    private final Map<String, IssueAggregate> leafsValues = new HashMap<>();
+    private final Set<String> detachedIssues = new HashSet<>();
+    private IssueHierarchyNodeProvider hierarchyProvider;
+    private List<Set<String>> projectsIds;
+    private boolean rebuildRequired = true;
+
+    public IssueRollup(Set<String> doneStatuses) {
+        this(doneStatuses, null);
+    }
+
+    /**
+     * @param doneStatuses - statuses in which leaf issue is counted as done
+     * @param epicLinkField - name of custom field with key of epic of the
+     * issue, may be null
+     */
+    public IssueRollup(Set<String> doneStatuses, String epicLinkField) {
+        this.doneStatuses = new HashSet<>(doneStatuses);
+        this.epicLinkField = epicLinkField;
+    }
+
+    @Override
+    public synchronized void updated(AgileProjectData data, double progress) {
+        rebuildRequired = true;
+    }
+
+    @Override
+    public synchronized void updated(AgileProjectData data, Collection<IssueData> changedIssues, double progress) {
+        changedIssues.forEach(issue -> this.changedIssues.add(issue.getKey()));
+    }
+
+    /**
+     * Applies changes reported since previous update.
+     *
+     * @param projectsGroupingOrder - projects from the lowest to the highest
+     * in hierarchy, loaded with this instance as observer
+     * @return this rollup
+     */
+    public synchronized IssueRollup update(List<Set<AgileProject>> projectsGroupingOrder) {
+        if (rebuildRequired || hierarchyProvider == null
+                || !getProjectsIds(projectsGroupingOrder).equals(projectsIds)
+                || isHierarchyChanged(projectsGroupingOrder)) {
+            rebuild(projectsGroupingOrder);
+        } else {
+            for (String issueKey : changedIssues) {
+                Issue issue = getIssue(projectsGroupingOrder, issueKey);
+                IssueAggregate previousValues = leafsValues.get(issueKey);
+                if (!issues.containsKey(issueKey)) {
+                    // new issue not related to any other, nothing is above it
+                    aggregates.put(issueKey, IssueAggregate.of(issue, doneStatuses));
+                    leafsValues.put(issueKey, IssueAggregate.of(issue, doneStatuses));
+                    detachedIssues.add(issueKey);
+                } else if (previousValues != null) {
+                    IssueAggregate values = IssueAggregate.of(issue, doneStatuses);
+                    Consumer<IssueAggregate> update = aggregate -> {
+                        aggregate.subtract(previousValues);
+                        aggregate.add(values);
+                    };
+                    if (detachedIssues.contains(issueKey)) {
+                        update.accept(aggregates.get(issueKey));
+                    } else {
+                        forEachAbove(hierarchyProvider.getHierarchy(issue), update);
+                    }
+                    leafsValues.put(issueKey, values);
+                }
+                issues.put(issueKey, issue);
+            }
+        }
+        changedIssues.clear();
+        return this;
+    }
+
+    /**
+     * @return values rolled up to the issue, they are modified by subsequent
+     * updates
+     */
+    public synchronized IssueAggregate getAggregate(Issue issue) {
+        IssueAggregate aggregate = aggregates.get(issue.getKey());
+        if (aggregate == null) {
+            throw new NoSuchElementException("Issue " + issue.getKey() + " does not belong to any of grouped projects");
+        }
+        return aggregate;
+    }
+
+    private void rebuild(List<Set<AgileProject>> projectsGroupingOrder) {
+        hierarchyProvider = new IssueHierarchyNodeProvider(projectsGroupingOrder, epicLinkField);
+        issues.clear();
+        aggregates.clear();
+        leafsValues.clear();
+        detachedIssues.clear();
+        Set<String> issuesWithIssuesBelow = new HashSet<>();
+        projectsGroupingOrder.forEach(projects -> projects.forEach(project -> project.getAllIssues().forEach(issue -> {
+            if (issues.putIfAbsent(issue.getKey(), issue) == null) {
+                aggregates.put(issue.getKey(), new IssueAggregate());
+                hierarchyProvider.getHierarchy(issue).getChildNodes()
+                        .forEach(node -> issuesWithIssuesBelow.add(node.getIssue().getKey()));
+            }
+        })));
+        issues.values().stream()
+                .filter(issue -> !issuesWithIssuesBelow.contains(issue.getKey()))
+                .forEach(issue -> {
+                    IssueAggregate values = IssueAggregate.of(issue, doneStatuses);
+                    leafsValues.put(issue.getKey(), values);
+                    forEachAbove(hierarchyProvider.getHierarchy(issue), aggregate -> aggregate.add(values));
+                });
+        projectsIds = getProjectsIds(projectsGroupingOrder);
+        rebuildRequired = false;
+    }
+
+    /**
+     * Calls action with aggregates of the node and of all nodes above it, each
+     * once.
+     */
+    private void forEachAbove(IssueHierarchyNode node, Consumer<IssueAggregate> action) {
+        Set<IssueHierarchyNode> visited = new HashSet<>();
+        Deque<IssueHierarchyNode> toVisit = new ArrayDeque<>();
+        toVisit.add(node);
+        visited.add(node);
+        while (!toVisit.isEmpty()) {
+            IssueHierarchyNode current = toVisit.poll();
+            action.accept(aggregates.get(current.getIssue().getKey()));
+            current.getChildNodes().stream().filter(visited::add).forEach(toVisit::add);
+        }
+    }
+
+    private boolean isHierarchyChanged(List<Set<AgileProject>> projectsGroupingOrder) {
+        for (String issueKey : changedIssues) {
+            Issue previousIssue = issues.get(issueKey);
+            Issue issue = getIssue(projectsGroupingOrder, issueKey);
+            if (issue == null) {
+                return true;
+            }
+            if (previousIssue == null) {
+                if (hasRelations(issue)) {
+                    return true;
+                }
+            } else if (!Objects.equals(previousIssue.getParentIssueKey(), issue.getParentIssueKey())
+                    || !Objects.equals(previousIssue.getLinkedIssuesKeys(), issue.getLinkedIssuesKeys())
+                    || !Objects.equals(hierarchyProvider.getEpicKey(previousIssue), hierarchyProvider.getEpicKey(issue))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Links are present on both linked issues, so issue which was linked to
+     * new issue is reported as changed as well.
+     */
+    private boolean hasRelations(Issue issue) {
+        return issue.getParentIssueKey() != null
+                || issue.getLinkedIssuesKeys() != null && !issue.getLinkedIssuesKeys().isEmpty()
+                || issue.getSubtaskKeys() != null && !issue.getSubtaskKeys().isEmpty()
+                || hierarchyProvider.getEpicKey(issue) != null;
+    }
+
+    private static Issue getIssue(List<Set<AgileProject>> projectsGroupingOrder, String issueKey) {
+        for (Set<AgileProject> projects : projectsGroupingOrder) {
+            for (AgileProject project : projects) {
+                Issue issue = project.getIssue(issueKey);
+                if (issue != null) {
+                    return issue;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<Set<String>> getProjectsIds(List<Set<AgileProject>> projectsGroupingOrder) {
+        return projectsGroupingOrder.stream()
+                .map(projects -> projects.stream().map(AgileProject::getId).collect(Collectors.toSet()))
+                .collect(Collectors.toList());
+    }
+}
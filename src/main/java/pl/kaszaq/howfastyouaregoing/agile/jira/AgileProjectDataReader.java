@@ -15,13 +15,18 @@
  */
 package pl.kaszaq.howfastyouaregoing.agile.jira;
 
+import java.io.Closeable;
 import java.io.IOException;
 import pl.kaszaq.howfastyouaregoing.agile.AgileProjectDataObserver;
 import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectData;
 
 
-public interface AgileProjectDataReader {
+public interface AgileProjectDataReader extends Closeable {
 
     AgileProjectData updateProject(AgileProjectData projectData, AgileProjectDataObserver observer, boolean cacheOnly) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
     
 }
@@ -0,0 +1,60 @@
+package pl.kaszaq.howfastyouaregoing.agile.jira;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import lombok.AllArgsConstructor;
+import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
+import pl.kaszaq.howfastyouaregoing.storage.FileStorage;
+
+/**
+ * Stores every issue in separate {@code <KEY>.json} file.
+ */
+@AllArgsConstructor
+class FileRawIssueCache implements RawIssueCache {
+
+    private final File jiraCacheIssuesDirectory;
+    private final FileStorage fileStorage;
+
+    @Override
+    public void storeIssue(String issueKey, JsonNode issue) throws IOException {
+        try (OutputStream out = fileStorage.openOutputStream(getIssueFile(issueKey))) {
+            OBJECT_MAPPER.writeValue(out, issue);
+        }
+    }
+
+    @Override
+    public int countIssues(String projectId) {
+        return getIssuesFiles(projectId).length;
+    }
+
+    @Override
+    public <T> List<Callable<List<T>>> createReadTasks(String projectId, Function<JsonNode, T> converter) {
+        File[] files = getIssuesFiles(projectId);
+        List<Callable<List<T>>> tasks = new ArrayList<>(files.length);
+        for (File file : files) {
+            tasks.add(() -> {
+                try (InputStream in = fileStorage.openInputStream(file)) {
+                    return Collections.singletonList(converter.apply(OBJECT_MAPPER.readTree(in)));
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private File getIssueFile(String issueId) {
+        return new File(jiraCacheIssuesDirectory, issueId + ".json");
+    }
+
+    private File[] getIssuesFiles(String projectId) {
+        File[] files = jiraCacheIssuesDirectory.listFiles((File dir1, String name) -> name.matches(projectId + "-\\d+\\.json"));
+        return files == null ? new File[0] : files;
+    }
+}
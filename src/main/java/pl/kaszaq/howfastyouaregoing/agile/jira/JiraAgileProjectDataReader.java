@@ -2,20 +2,34 @@ package pl.kaszaq.howfastyouaregoing.agile.jira;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
-import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
 import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectData;
+import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectDataBuilder;
 import pl.kaszaq.howfastyouaregoing.http.HttpClient;
 import pl.kaszaq.howfastyouaregoing.agile.AgileProjectDataObserver;
 import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectStatuses;
@@ -26,16 +40,23 @@ import pl.kaszaq.howfastyouaregoing.storage.FileStorage;
 @Slf4j
 public class JiraAgileProjectDataReader implements AgileProjectDataReader {
 
+    /**
+     * Snapshots of project are published to observer not more often than
+     * after this number of updated issues, as each one is a copy of all
+     * issues of the project.
+     */
+    private static final int ISSUES_PER_CHECKPOINT = 1000;
+
     private final JiraIssueParser issueParser;
     private final HttpClient httpClient;
-    private final File jiraCacheIssuesDirectory;
+    private final RawIssueCache rawIssueCache;
     private final String jiraSearchEndpoint;
     private final Set<String> customFieldsNames;
     private final int minutesUntilUpdate;
-    private final FileStorage fileStorage;
     private final JiraProjectStatusReader statusReader;
     private final boolean emptyDescriptionAndSummary;
     private final boolean cacheRawJiraFiles;
+    private final int searchParallelism;
 
     JiraAgileProjectDataReader(
             HttpClient client,
@@ -45,31 +66,47 @@ public class JiraAgileProjectDataReader implements AgileProjectDataReader {
             int minutesUntilUpdate,
             FileStorage fileStorage,
             boolean emptyDescriptionAndSummary,
-            boolean cacheRawJiraFiles) {
-        this.jiraCacheIssuesDirectory = jiraCacheIssuesDirectory;
+            boolean cacheRawJiraFiles,
+            int searchParallelism,
+            boolean packedRawJiraFiles) {
+        RawIssueCache fileRawIssueCache = new FileRawIssueCache(jiraCacheIssuesDirectory, fileStorage);
+        if (packedRawJiraFiles) {
+            this.rawIssueCache = new SegmentedRawIssueCache(new File(jiraCacheIssuesDirectory.getParentFile(), "segments"), fileStorage, fileRawIssueCache);
+        } else {
+            this.rawIssueCache = fileRawIssueCache;
+        }
         this.jiraSearchEndpoint = jiraUrl + "/rest/api/2/search";
         // todo: it should be possible to close this client
         this.httpClient = client;
         this.issueParser = new JiraIssueParser(customFieldsParsers);
         this.customFieldsNames = new HashSet<>(customFieldsParsers.keySet());
         this.minutesUntilUpdate = minutesUntilUpdate;
-        this.fileStorage = fileStorage;
         statusReader = new JiraProjectStatusReader(httpClient, jiraUrl, jiraCacheIssuesDirectory, fileStorage, cacheRawJiraFiles);
         this.emptyDescriptionAndSummary = emptyDescriptionAndSummary;
         this.cacheRawJiraFiles = cacheRawJiraFiles;
+        this.searchParallelism = searchParallelism;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
     }
 
     @Override
     public AgileProjectData updateProject(AgileProjectData projectData, AgileProjectDataObserver observer, boolean cacheOnly) throws IOException {
+        List<IssueData> changedIssues = Collections.emptyList();
         if (requiresUpdate(projectData)) {
+            AgileProjectDataBuilder projectDataBuilder = new AgileProjectDataBuilder(projectData, customFieldsNames);
             if (cacheRawJiraFiles) {
-                projectData = tryUpdateFromLocalJiraFiles(projectData, observer);
+                tryUpdateFromLocalJiraFiles(projectDataBuilder, observer);
             }
             if (!cacheOnly) {
-                projectData = updateCachedProject(projectData, observer);
+                updateCachedProject(projectDataBuilder, observer);
             }
+            changedIssues = projectDataBuilder.getIssuesChangedSinceCheckpoint();
+            projectData = projectDataBuilder.build();
         }
-        observer.updated(projectData, 1.0);
+        observer.updated(projectData, changedIssues, 1.0);
         return projectData;
     }
 
@@ -77,79 +114,150 @@ public class JiraAgileProjectDataReader implements AgileProjectDataReader {
         return project.getLastUpdated().isBefore(ZonedDateTime.now(getClock()).minusMinutes(minutesUntilUpdate));
     }
 
-    private File getIssueFile(String issueId) {
-        return new File(jiraCacheIssuesDirectory, issueId + ".json");
-    }
-
-    private File[] getIssuesFiles(String projectId) {
-        return jiraCacheIssuesDirectory.listFiles((File dir1, String name) -> name.matches(projectId + "-\\d+\\.json"));
-    }
-
-    private AgileProjectData updateCachedProject(AgileProjectData projectData, AgileProjectDataObserver observer) throws IOException {
+    private void updateCachedProject(AgileProjectDataBuilder projectDataBuilder, AgileProjectDataObserver observer) throws IOException {
         // TODO: the time zone should be taken from user configuration on jira side. Currently one day is substracted to avoid any issues
         ZoneId userJiraZoneId = ZoneId.systemDefault();
-        String lastUpdatedQueryValue = projectData.getLastUpdatedIssue()
+        String lastUpdatedQueryValue = projectDataBuilder.getLastUpdatedIssue()
                 .minusDays(1)
                 .withZoneSameInstant(userJiraZoneId).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-        
-
-        AgileProjectStatuses newStatuses = statusReader.getProjectStatuses(projectData.getProjectId(), false);
-        int maxResults = 50;
-        int startAt = 0;
-        int total = 0;
-        ZonedDateTime lastUpdatedIssue;
-        do {
-            //TODO: maybe bound fields list here to list that is inside POJO and use it instead?
-            JiraSearchRequest searchRequest = JiraSearchRequest.builder()
-                    .expand(ImmutableSet.of("changelog"))
-                    .jql("project = " + projectData.getProjectId() + " AND updated >= \"" + lastUpdatedQueryValue + "\" ORDER BY updated ASC")
-                    .maxResults(maxResults)
-                    .fields(ImmutableSet.of("*all"))
-                    .startAt(startAt)
-                    .build();
-
-            String response = httpClient.postJson(jiraSearchEndpoint, searchRequest);
-            JsonNode tree = OBJECT_MAPPER.readTree(response);
-            maxResults = tree.get("maxResults").asInt();
-            startAt = tree.get("startAt").asInt();
-            total = tree.get("total").asInt();
-
-            lastUpdatedIssue = projectData.getLastUpdatedIssue();
-            Map<String, IssueData> issues = new HashMap<>(projectData.getIssues());
-            Iterator<JsonNode> issuesIterator = tree.get("issues").elements();
-            while (issuesIterator.hasNext()) {
-                JsonNode node = issuesIterator.next();
-                IssueData issueData = issueParser.parseJiraIssue(node, emptyDescriptionAndSummary);
-                if (issueData.getUpdated().isAfter(lastUpdatedIssue)) {
-                    lastUpdatedIssue = issueData.getUpdated();
-                }
-                issues.put(issueData.getKey(), issueData);
-                if (cacheRawJiraFiles) {
-                    try {
-                        fileStorage.storeFile(getIssueFile(issueData.getKey()), OBJECT_MAPPER.writeValueAsString(node));
-                    } catch (IOException ex) {
-                        LOG.warn("Unable to store vanila jira issue data. Issue id: {}", issueData.getKey(), ex);
+        String jql = "project = " + projectDataBuilder.getProjectId() + " AND updated >= \"" + lastUpdatedQueryValue + "\" ORDER BY updated ASC";
+
+        CompletableFuture<AgileProjectStatuses> statusesRequest = statusReader.getProjectStatusesAsync(projectDataBuilder.getProjectId());
+        ConcurrentMap<String, RawIssueVersion> storedRawIssues = new ConcurrentHashMap<>();
+        AtomicBoolean finished = new AtomicBoolean();
+        JiraSearchResponseReader responseReader = new JiraSearchResponseReader(issueParser, emptyDescriptionAndSummary,
+                (issueData, node) -> storeRawIssue(issueData, node, storedRawIssues, finished));
+        Deque<CompletableFuture<JiraSearchPage>> prefetchedPages = new ArrayDeque<>();
+        try {
+            int nextPageStartAt = 0;
+            int maxResults = 50;
+            int startAt = 0;
+            int total = 0;
+            JiraSearchPage page = search(jql, startAt, maxResults, responseReader);
+            projectDataBuilder.statuses(await(statusesRequest));
+            do {
+                maxResults = page.getMaxResults();
+                startAt = page.getStartAt();
+                total = page.getTotal();
+
+                page.getIssues().forEach(projectDataBuilder::putIssue);
+                startAt = startAt + maxResults;
+                if (total > 0 && startAt < total) {
+                    if (projectDataBuilder.getIssuesChangedSinceCheckpoint().size() >= ISSUES_PER_CHECKPOINT) {
+                        rawIssueCache.flush();
+                        publishCheckpoint(projectDataBuilder.lastUpdated(projectDataBuilder.getLastUpdatedIssue()), observer, (double) startAt / (double) total);
+                    }
+                    if (searchParallelism <= 1) {
+                        page = search(jql, startAt, maxResults, responseReader);
+                    } else {
+                        // pages are requested ahead of time but merged strictly in the order they were requested,
+                        // so issues are still applied in "updated ASC" order
+                        nextPageStartAt = Math.max(nextPageStartAt, startAt);
+                        while (prefetchedPages.size() < searchParallelism && nextPageStartAt < total) {
+                            prefetchedPages.add(searchAsync(jql, nextPageStartAt, maxResults, responseReader));
+                            nextPageStartAt += maxResults;
+                        }
+                        page = await(prefetchedPages.poll());
                     }
                 }
+            } while (startAt < total);
+            rawIssueCache.flush();
+        } finally {
+            statusesRequest.cancel(false);
+            // pages still being read must not write to raw cache once this sync is over, as next one may be writing already
+            finished.set(true);
+            prefetchedPages.forEach(this::awaitQuietly);
+            flushQuietly();
+        }
+        projectDataBuilder.lastUpdated(ZonedDateTime.now(getClock()));
+    }
+
+    private void publishCheckpoint(AgileProjectDataBuilder projectDataBuilder, AgileProjectDataObserver observer, double progress) {
+        List<IssueData> changedIssues = projectDataBuilder.getIssuesChangedSinceCheckpoint();
+        observer.updated(projectDataBuilder.checkpoint(), changedIssues, progress);
+    }
+
+    private JiraSearchPage search(String jql, int startAt, int maxResults, JiraSearchResponseReader responseReader) throws IOException {
+        return httpClient.postJson(jiraSearchEndpoint, createSearchRequest(jql, startAt, maxResults), responseReader);
+    }
+
+    private CompletableFuture<JiraSearchPage> searchAsync(String jql, int startAt, int maxResults, JiraSearchResponseReader responseReader) {
+        return httpClient.postJsonAsync(jiraSearchEndpoint, createSearchRequest(jql, startAt, maxResults), responseReader);
+    }
+
+    private JiraSearchRequest createSearchRequest(String jql, int startAt, int maxResults) {
+        //TODO: maybe bound fields list here to list that is inside POJO and use it instead?
+        return JiraSearchRequest.builder()
+                .expand(ImmutableSet.of("changelog"))
+                .jql(jql)
+                .maxResults(maxResults)
+                .fields(ImmutableSet.of("*all"))
+                .startAt(startAt)
+                .build();
+    }
 
-            };
-            projectData = new AgileProjectData(projectData.getProjectId(), lastUpdatedIssue, lastUpdatedIssue, issues, customFieldsNames, newStatuses);
-            startAt = startAt + maxResults;
-            if (total > 0 && startAt < total) {
-                observer.updated(projectData, (double) startAt / (double) total);
+    private void storeRawIssue(IssueData issueData, JsonNode node, ConcurrentMap<String, RawIssueVersion> storedRawIssues, AtomicBoolean finished) {
+        if (!cacheRawJiraFiles) {
+            return;
+        }
+        // pages may be read concurrently and the same issue can show up on two of them, only its most recent version is kept.
+        // Version of the issue is locked only while the issue is written, so that writes of other issues are not blocked.
+        RawIssueVersion storedVersion = storedRawIssues.computeIfAbsent(issueData.getKey(), key -> new RawIssueVersion());
+        synchronized (storedVersion) {
+            if (finished.get() || storedVersion.updated != null && storedVersion.updated.isAfter(issueData.getUpdated())) {
+                return;
             }
-        } while (startAt < total);
-        projectData = new AgileProjectData(projectData.getProjectId(), lastUpdatedIssue, ZonedDateTime.now(getClock()), new HashMap<>(projectData.getIssues()), customFieldsNames, newStatuses);
-        return projectData;
+            try {
+                rawIssueCache.storeIssue(issueData.getKey(), node);
+                storedVersion.updated = issueData.getUpdated();
+            } catch (IOException ex) {
+                LOG.warn("Unable to store vanila jira issue data. Issue id: {}", issueData.getKey(), ex);
+            }
+        }
+    }
+
+    private void awaitQuietly(Future<?> request) {
+        try {
+            await(request);
+        } catch (IOException ex) {
+            LOG.debug("Ignored response of abandoned request", ex);
+        }
+    }
+
+    /**
+     * Closes files of raw cache left open by interrupted synchronization,
+     * after successful one they are already flushed.
+     */
+    private void flushQuietly() {
+        try {
+            rawIssueCache.flush();
+        } catch (IOException ex) {
+            LOG.warn("Unable to flush cached raw jira issues", ex);
+        }
     }
 
-    private AgileProjectData tryUpdateFromLocalJiraFiles(AgileProjectData projectData, AgileProjectDataObserver observer) throws IOException {
-        if (projectData.getIssues().isEmpty()) {
-            File[] files = getIssuesFiles(projectData.getProjectId());
-            if (files.length > 0) {
+    private <T> T await(Future<T> request) throws IOException {
+        try {
+            return request.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for response from jira", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Unable to read response from jira", ex.getCause());
+        }
+    }
+
+    private void tryUpdateFromLocalJiraFiles(AgileProjectDataBuilder projectDataBuilder, AgileProjectDataObserver observer) throws IOException {
+        if (!projectDataBuilder.hasIssues()) {
+            String projectId = projectDataBuilder.getProjectId();
+            int cachedIssues = rawIssueCache.countIssues(projectId);
+            if (cachedIssues > 0) {
                 AgileProjectStatuses statuses = null;
-                if (statusReader.areStatusesCached(projectData.getProjectId())) {
-                    statuses = statusReader.getProjectStatuses(projectData.getProjectId(), true);
+                if (statusReader.areStatusesCached(projectId)) {
+                    statuses = statusReader.getProjectStatuses(projectId, true);
                 }
 
                 LOG.info("Project was empty but there were files from jira found in cache. "
@@ -157,21 +265,47 @@ public class JiraAgileProjectDataReader implements AgileProjectDataReader {
                         + "If this behavior was not expected and you need to read all files freshly from jira, "
                         + "you have to remove all cached files, not only project file.");
 
-                ZonedDateTime lastUpdatedIssue = projectData.getLastUpdatedIssue();
-                Map<String, IssueData> issues = new HashMap<>(projectData.getIssues());
-                for (File file : files) {
+                projectDataBuilder.statuses(statuses);
+                parseLocalJiraFiles(projectId, cachedIssues, projectDataBuilder, observer);
+                publishCheckpoint(projectDataBuilder.lastUpdated(projectDataBuilder.getLastUpdatedIssue()), observer, 1.0);
+            }
+        }
+    }
 
-                    IssueData issueData = issueParser.parseJiraIssue(OBJECT_MAPPER.readTree(fileStorage.loadFile(file)), emptyDescriptionAndSummary);
-                    if (issueData.getUpdated().isAfter(lastUpdatedIssue)) {
-                        lastUpdatedIssue = issueData.getUpdated();
-                    }
-                    issues.put(issueData.getKey(), issueData);
+    /**
+     * Cached issues are read and parsed on all available cores, parsed issues
+     * are put into the project and reported to the observer from calling
+     * thread only.
+     */
+    private void parseLocalJiraFiles(String projectId, int cachedIssues, AgileProjectDataBuilder projectDataBuilder, AgileProjectDataObserver observer) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactoryBuilder()
+                .setNameFormat("jira-cache-parser-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            CompletionService<List<IssueData>> parsedIssues = new ExecutorCompletionService<>(executor);
+            List<Callable<List<IssueData>>> tasks = rawIssueCache.createReadTasks(projectId,
+                    node -> issueParser.parseJiraIssue(node, emptyDescriptionAndSummary));
+            tasks.forEach(parsedIssues::submit);
+            int parsed = 0;
+            for (int finishedTasks = 1; finishedTasks <= tasks.size(); finishedTasks++) {
+                List<IssueData> issues = await(parsedIssues.take());
+                issues.forEach(projectDataBuilder::putIssue);
+                parsed += issues.size();
+                if (finishedTasks < tasks.size() && projectDataBuilder.getIssuesChangedSinceCheckpoint().size() >= ISSUES_PER_CHECKPOINT) {
+                    publishCheckpoint(projectDataBuilder.lastUpdated(projectDataBuilder.getLastUpdatedIssue()), observer, (double) parsed / cachedIssues);
                 }
-                projectData = new AgileProjectData(projectData.getProjectId(), lastUpdatedIssue, lastUpdatedIssue, issues, customFieldsNames, statuses);
-                observer.updated(projectData, 0.0);
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading cached jira files", ex);
+        } finally {
+            executor.shutdownNow();
         }
-        return projectData;
     }
 
+    private static class RawIssueVersion {
+
+        private ZonedDateTime updated;
+    }
 }
@@ -8,7 +8,9 @@ import java.util.Map;
 import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import pl.kaszaq.howfastyouaregoing.agile.CachingAgileProjectProvider;
+import pl.kaszaq.howfastyouaregoing.agile.ProjectFileFormat;
 import pl.kaszaq.howfastyouaregoing.http.HttpClient;
+import pl.kaszaq.howfastyouaregoing.http.HttpClientSettings;
 import pl.kaszaq.howfastyouaregoing.storage.DefaultFileStorage;
 import pl.kaszaq.howfastyouaregoing.storage.FileStorage;
 
@@ -36,6 +38,10 @@ public class JiraAgileProjectProviderBuilderFactory {
         private boolean cacheOnly;
         private boolean emptyDescriptionAndSummary = false;
         private boolean cacheRawJiraFiles = true;
+        private boolean packedRawJiraFiles = false;
+        private int searchParallelism = 1;
+        private HttpClientSettings httpClientSettings = HttpClientSettings.builder().build();
+        private ProjectFileFormat projectFileFormat = ProjectFileFormat.JSON;
 
         private JiraAgileProjectProviderBuilder(String username, String password) {
             this.username = username;
@@ -95,12 +101,53 @@ public class JiraAgileProjectProviderBuilderFactory {
             return this;
         }
 
+        /**
+         * When enabled raw jira issues are cached packed in append-only
+         * segment files per project instead of one file per issue, which
+         * avoids listing directories with huge number of small files.
+         * Previously cached files of a project are copied into segments the
+         * first time segments of the project are opened. Defaults to false.
+         */
+        public JiraAgileProjectProviderBuilder withPackedRawJiraFiles(boolean packedRawJiraFiles) {
+            this.packedRawJiraFiles = packedRawJiraFiles;
+            return this;
+        }
+
+        /**
+         * Sets how many pages of jira search results may be fetched at the
+         * same time. With value greater than 1 first page is read to find out
+         * total number of issues to be updated and remaining pages are
+         * requested concurrently, still being merged in the order of their
+         * update date. Defaults to 1 - pages are fetched one after another.
+         * Concurrent requests are also bound by connections per route of
+         * {@link HttpClientSettings}.
+         */
+        public JiraAgileProjectProviderBuilder withSearchParallelism(int searchParallelism) {
+            this.searchParallelism = searchParallelism;
+            return this;
+        }
+
+        public JiraAgileProjectProviderBuilder withHttpClientSettings(HttpClientSettings httpClientSettings) {
+            this.httpClientSettings = httpClientSettings;
+            return this;
+        }
+
+        /**
+         * Sets format of project files kept in cache directory. Project file
+         * in previously used format is read and replaced with new one on next
+         * update. Defaults to json.
+         */
+        public JiraAgileProjectProviderBuilder withProjectFileFormat(ProjectFileFormat projectFileFormat) {
+            this.projectFileFormat = projectFileFormat;
+            return this;
+        }
+
         public AgileProjectProvider build() {
             HttpClient client;
             if (jsessionId != null) {
-                client = new HttpClient(jsessionId);
+                client = new HttpClient(jsessionId, httpClientSettings);
             } else {
-                client = new HttpClient(username, password);
+                client = new HttpClient(username, password, httpClientSettings);
             }
             if (cacheDir == null) {
                 cacheDir = new File("cache/");
@@ -111,8 +158,8 @@ public class JiraAgileProjectProviderBuilderFactory {
                 fileStorage = new DefaultFileStorage();
             }
             JiraAgileProjectDataReader reader = new JiraAgileProjectDataReader(client, jiraCacheIssuesDirectory,
-                    jiraUrl, customFieldsParsers, minutesUntilUpdate, fileStorage, emptyDescriptionAndSummary, cacheRawJiraFiles);
-            return new CachingAgileProjectProvider(cacheDir, customFieldsParsers.keySet(), reader, cacheOnly, fileStorage);
+                    jiraUrl, customFieldsParsers, minutesUntilUpdate, fileStorage, emptyDescriptionAndSummary, cacheRawJiraFiles, searchParallelism, packedRawJiraFiles);
+            return new CachingAgileProjectProvider(cacheDir, customFieldsParsers.keySet(), reader, cacheOnly, fileStorage, projectFileFormat);
         }
 
     }
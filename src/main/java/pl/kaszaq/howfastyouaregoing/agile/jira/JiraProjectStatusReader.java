@@ -18,9 +18,13 @@ package pl.kaszaq.howfastyouaregoing.agile.jira;
 import com.fasterxml.jackson.databind.JsonNode;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
 import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectStatuses;
 import pl.kaszaq.howfastyouaregoing.http.HttpClient;
@@ -44,28 +48,56 @@ public class JiraProjectStatusReader {
     }
 
     boolean areStatusesCached(String projectKey) {
-        return cacheRawJiraFiles && new File(jiraCacheIssuesDirectory, projectKey + "-STATUSES" + ".json").exists();
+        return cacheRawJiraFiles && getStatusesFile(projectKey).exists();
     }
 
     AgileProjectStatuses getProjectStatuses(String projectKey, boolean readFromCache) throws IOException {
-        String url = jiraUrl + "/rest/api/2/project/" + projectKey + "/statuses";
-        File file = new File(jiraCacheIssuesDirectory, projectKey + "-STATUSES" + ".json");
-        String response;
         if (readFromCache) { // to do this cacheRawJiraFiles is stupid. So in this methods I can call it to read from local even though cacheRawJiraFiles is set to false
-            response = fileStorage.loadFile(file);
-        } else {
-            response = httpClient.get(url);
-            if (cacheRawJiraFiles) {
-                fileStorage.storeFile(file, response);
+            try (InputStream in = fileStorage.openInputStream(getStatusesFile(projectKey))) {
+                return parseProjectStatuses(OBJECT_MAPPER.readTree(in));
             }
         }
+        return storeAndParseProjectStatuses(projectKey, httpClient.get(getStatusesUrl(projectKey), OBJECT_MAPPER::readTree));
+    }
+
+    /**
+     * Requests statuses from jira without blocking, so that it may overlap
+     * with other requests like searching for updated issues.
+     */
+    CompletableFuture<AgileProjectStatuses> getProjectStatusesAsync(String projectKey) {
+        return httpClient.getAsync(getStatusesUrl(projectKey), OBJECT_MAPPER::readTree)
+                .thenApply(response -> {
+                    try {
+                        return storeAndParseProjectStatuses(projectKey, response);
+                    } catch (IOException ex) {
+                        throw new CompletionException(ex);
+                    }
+                });
+    }
+
+    private String getStatusesUrl(String projectKey) {
+        return jiraUrl + "/rest/api/2/project/" + projectKey + "/statuses";
+    }
+
+    private File getStatusesFile(String projectKey) {
+        return new File(jiraCacheIssuesDirectory, projectKey + "-STATUSES" + ".json");
+    }
+
+    private AgileProjectStatuses storeAndParseProjectStatuses(String projectKey, JsonNode response) throws IOException {
+        if (cacheRawJiraFiles) {
+            try (OutputStream out = fileStorage.openOutputStream(getStatusesFile(projectKey))) {
+                OBJECT_MAPPER.writeValue(out, response);
+            }
+        }
+        return parseProjectStatuses(response);
+    }
 
+    private AgileProjectStatuses parseProjectStatuses(JsonNode tree) {
         Set<String> indeterminateStatuses = new HashSet<>();
         Set<String> newStatuses = new HashSet<>();
         Set<String> doneStatuses = new HashSet<>();
         Set<String> undefinedStatuses = new HashSet<>();
 
-        JsonNode tree = OBJECT_MAPPER.readTree(response);
         Iterator<JsonNode> it = tree.elements();
         while (it.hasNext()) {
             JsonNode val = it.next();
@@ -0,0 +1,16 @@
+package pl.kaszaq.howfastyouaregoing.agile.jira;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import pl.kaszaq.howfastyouaregoing.agile.IssueData;
+
+@Getter
+@AllArgsConstructor
+class JiraSearchPage {
+
+    private final int startAt;
+    private final int maxResults;
+    private final int total;
+    private final List<IssueData> issues;
+}
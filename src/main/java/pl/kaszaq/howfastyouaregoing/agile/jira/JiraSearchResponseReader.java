@@ -0,0 +1,81 @@
+package pl.kaszaq.howfastyouaregoing.agile.jira;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import lombok.AllArgsConstructor;
+import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
+import pl.kaszaq.howfastyouaregoing.agile.IssueData;
+import pl.kaszaq.howfastyouaregoing.http.ResponseReader;
+
+/**
+ * Reads response of jira search endpoint issue by issue, so only tree of
+ * single issue is kept in memory at once instead of whole page.
+ */
+@AllArgsConstructor
+class JiraSearchResponseReader implements ResponseReader<JiraSearchPage> {
+
+    private final JiraIssueParser issueParser;
+    private final boolean emptyDescriptionAndSummary;
+    private final BiConsumer<IssueData, JsonNode> rawIssueConsumer;
+
+    @Override
+    public JiraSearchPage read(InputStream content) throws IOException {
+        int startAt = 0;
+        int maxResults = 0;
+        Integer total = null;
+        List<IssueData> issues = null;
+        JsonNode errorMessages = null;
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected response from jira search, expected json object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                switch (fieldName) {
+                    case "startAt":
+                        startAt = parser.getValueAsInt();
+                        break;
+                    case "maxResults":
+                        maxResults = parser.getValueAsInt();
+                        break;
+                    case "total":
+                        if (valueToken == JsonToken.VALUE_NUMBER_INT) {
+                            total = parser.getIntValue();
+                        }
+                        break;
+                    case "issues":
+                        if (valueToken != JsonToken.START_ARRAY) {
+                            parser.skipChildren();
+                            break;
+                        }
+                        issues = new ArrayList<>();
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            JsonNode issueNode = parser.readValueAsTree();
+                            IssueData issueData = issueParser.parseJiraIssue(issueNode, emptyDescriptionAndSummary);
+                            rawIssueConsumer.accept(issueData, issueNode);
+                            issues.add(issueData);
+                        }
+                        break;
+                    case "errorMessages":
+                        errorMessages = parser.readValueAsTree();
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+        if (total == null || issues == null) {
+            // error responses are json objects as well, they must not be taken for an empty page
+            throw new IOException("Unexpected response from jira search, missing total or issues"
+                    + (errorMessages == null ? "" : ", errors: " + errorMessages));
+        }
+        return new JiraSearchPage(startAt, maxResults, total, issues);
+    }
+}
@@ -0,0 +1,40 @@
+package pl.kaszaq.howfastyouaregoing.agile.jira;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Keeps issues exactly as they were received from jira, so that project can
+ * be recreated without downloading it again, for example after change of
+ * custom fields.
+ */
+interface RawIssueCache {
+
+    /**
+     * Stores issue replacing previously stored version of it. May be called
+     * concurrently.
+     */
+    void storeIssue(String issueKey, JsonNode issue) throws IOException;
+
+    /**
+     * Writes out issues stored so far and closes files kept open for them.
+     * Called on every checkpoint and when synchronization is finished.
+     */
+    default void flush() throws IOException {
+    }
+
+    int countIssues(String projectId) throws IOException;
+
+    /**
+     * Creates tasks which together read all cached issues of the project and
+     * convert them. Tasks are independent and may be run concurrently.
+     */
+    <T> List<Callable<List<T>>> createReadTasks(String projectId, Function<JsonNode, T> converter) throws IOException;
+
+    static String getProjectId(String issueKey) {
+        return issueKey.substring(0, issueKey.lastIndexOf('-'));
+    }
+}
@@ -0,0 +1,515 @@
+package pl.kaszaq.howfastyouaregoing.agile.jira;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
+import pl.kaszaq.howfastyouaregoing.storage.FileStorage;
+
+/**
+ * Stores issues of each project packed in append-only segment files
+ * ({@code <PROJECT>/<n>.seg}) instead of one file per issue. Every record is
+ * a single line {@code KEY\tjson\n}. Position of the newest record of every
+ * issue is kept in {@code <PROJECT>/index}, so listing issues of a project
+ * does not require listing directories. Active segment is kept open for
+ * appending until {@link #flush()}, index entries are collected in memory and
+ * appended after the segment is closed, so index never points past the end
+ * of a segment. Outdated records are removed by compaction running in the
+ * background once they take more space than current ones. Compaction writes
+ * new segments and new index next to the current ones, moves the index into
+ * place and only then deletes old segments, so that interrupted compaction
+ * leaves current index and segments intact. Segments not referenced by the
+ * index are left until next compaction.
+ *
+ * When segments of a project are opened for the first time, issues of the
+ * project found in legacy cache are stored in segments, so switching to
+ * segments does not require downloading projects again and issues not
+ * updated since then are not lost. Legacy files are left in place.
+ */
+@Slf4j
+class SegmentedRawIssueCache implements RawIssueCache {
+
+    private static final long SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final String SEGMENT_EXTENSION = ".seg";
+
+    private final File segmentsDirectory;
+    private final FileStorage fileStorage;
+    private final RawIssueCache legacyCache;
+    private final Map<String, ProjectSegments> projects = new HashMap<>();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("raw-issue-cache-compaction-%d")
+            .setDaemon(true)
+            .build());
+
+    SegmentedRawIssueCache(File segmentsDirectory, FileStorage fileStorage, RawIssueCache legacyCache) {
+        this.segmentsDirectory = segmentsDirectory;
+        this.fileStorage = fileStorage;
+        this.legacyCache = legacyCache;
+    }
+
+    @Override
+    public void storeIssue(String issueKey, JsonNode issue) throws IOException {
+        ProjectSegments project = getProject(RawIssueCache.getProjectId(issueKey));
+        if (project.store(issueKey, OBJECT_MAPPER.writeValueAsString(issue))) {
+            compactionExecutor.execute(() -> {
+                try {
+                    project.compact();
+                } catch (IOException | RuntimeException ex) {
+                    LOG.warn("Unable to compact raw issues of project {}", project.projectDirectory, ex);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        List<ProjectSegments> openedProjects;
+        synchronized (this) {
+            openedProjects = new ArrayList<>(projects.values());
+        }
+        for (ProjectSegments project : openedProjects) {
+            project.flush();
+        }
+    }
+
+    @Override
+    public int countIssues(String projectId) throws IOException {
+        return getProject(projectId).count();
+    }
+
+    @Override
+    public <T> List<Callable<List<T>>> createReadTasks(String projectId, Function<JsonNode, T> converter) throws IOException {
+        return getProject(projectId).createReadTasks(converter);
+    }
+
+    private synchronized ProjectSegments getProject(String projectId) throws IOException {
+        ProjectSegments project = projects.get(projectId);
+        if (project == null) {
+            project = new ProjectSegments(new File(segmentsDirectory, projectId));
+            project.open();
+            if (project.count() == 0) {
+                migrateLegacyIssues(projectId, project);
+            }
+            projects.put(projectId, project);
+        }
+        return project;
+    }
+
+    private void migrateLegacyIssues(String projectId, ProjectSegments project) throws IOException {
+        List<Callable<List<JsonNode>>> tasks = legacyCache.createReadTasks(projectId, Function.identity());
+        if (tasks.isEmpty()) {
+            return;
+        }
+        LOG.info("Storing {} raw issues of project {} cached in legacy files in segments", tasks.size(), projectId);
+        for (Callable<List<JsonNode>> task : tasks) {
+            List<JsonNode> issues;
+            try {
+                issues = task.call();
+            } catch (IOException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new IOException("Unable to read raw issues of project " + projectId + " from legacy cache", ex);
+            }
+            for (JsonNode issue : issues) {
+                project.store(issue.get("key").asText(), OBJECT_MAPPER.writeValueAsString(issue));
+            }
+        }
+        project.flush();
+    }
+
+    @AllArgsConstructor
+    private static class RecordPosition {
+
+        private final int segment;
+        private final long offset;
+        private final int length;
+    }
+
+    private class ProjectSegments {
+
+        private final File projectDirectory;
+        private final File indexFile;
+        private final File newIndexFile;
+        private final Map<String, RecordPosition> index = new HashMap<>();
+        private final StringBuilder pendingIndexLines = new StringBuilder();
+        // read tasks hold read lock, so that compaction does not remove segments being read
+        private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+        private int activeSegment;
+        private long activeSegmentSize;
+        private WritableByteChannel activeSegmentChannel;
+        private int indexLines;
+        private long liveBytes;
+        private long garbageBytes;
+        private boolean compactionScheduled;
+
+        ProjectSegments(File projectDirectory) {
+            this.projectDirectory = projectDirectory;
+            this.indexFile = new File(projectDirectory, "index");
+            this.newIndexFile = new File(projectDirectory, "index.new");
+        }
+
+        synchronized void open() throws IOException {
+            if (indexFile.exists()) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(fileStorage.openInputStream(indexFile), StandardCharsets.UTF_8))) {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        String[] fields = line.split("\t");
+                        indexLines++;
+                        if (fields.length == 4) {
+                            put(fields[0], new RecordPosition(Integer.parseInt(fields[1]), Long.parseLong(fields[2]), Integer.parseInt(fields[3])));
+                        } else {
+                            LOG.warn("Ignoring damaged entry of index {}", indexFile);
+                        }
+                    }
+                }
+            }
+            // index of interrupted compaction, may be incomplete
+            fileStorage.deleteFile(newIndexFile);
+            activeSegment = listSegments().stream().mapToInt(Integer::intValue).max().orElse(0);
+            recoverActiveSegment();
+            flush();
+        }
+
+        /**
+         * Records appended to the segment but missing in the index (write of
+         * index interrupted) are indexed again. After incomplete record at the
+         * end new segment is started, as records appended to it would not be
+         * readable.
+         */
+        private void recoverActiveSegment() throws IOException {
+            File segmentFile = getSegmentFile(activeSegment);
+            long indexedEnd = index.values().stream()
+                    .filter(position -> position.segment == activeSegment)
+                    .mapToLong(position -> position.offset + position.length)
+                    .max().orElse(0);
+            activeSegmentSize = indexedEnd;
+            if (!segmentFile.exists()) {
+                return;
+            }
+            try (RecordReader reader = new RecordReader(fileStorage.openInputStream(segmentFile))) {
+                reader.skip(indexedEnd);
+                for (byte[] record = reader.next(); record != null; record = reader.next()) {
+                    if (record[record.length - 1] == '\n') {
+                        String key = getKey(record);
+                        RecordPosition position = new RecordPosition(activeSegment, activeSegmentSize, record.length);
+                        appendToIndex(key, position);
+                        put(key, position);
+                        activeSegmentSize += record.length;
+                    } else {
+                        garbageBytes += record.length;
+                        activeSegment++;
+                        activeSegmentSize = 0;
+                    }
+                }
+            }
+        }
+
+        synchronized int count() {
+            return index.size();
+        }
+
+        /**
+         * @return whether compaction should be scheduled
+         */
+        synchronized boolean store(String issueKey, String json) throws IOException {
+            byte[] record = (issueKey + "\t" + json + "\n").getBytes(StandardCharsets.UTF_8);
+            int length = record.length;
+            if (activeSegmentSize > 0 && activeSegmentSize + length > SEGMENT_SIZE) {
+                flush();
+                activeSegment++;
+                activeSegmentSize = 0;
+            }
+            if (activeSegmentChannel == null) {
+                activeSegmentChannel = fileStorage.openAppendingChannel(getSegmentFile(activeSegment));
+            }
+            writeFully(activeSegmentChannel, ByteBuffer.wrap(record));
+            RecordPosition position = new RecordPosition(activeSegment, activeSegmentSize, length);
+            activeSegmentSize += length;
+            appendToIndex(issueKey, position);
+            put(issueKey, position);
+            if (!compactionScheduled && garbageBytes > SEGMENT_SIZE && garbageBytes > liveBytes) {
+                compactionScheduled = true;
+                return true;
+            }
+            return false;
+        }
+
+        <T> List<Callable<List<T>>> createReadTasks(Function<JsonNode, T> converter) throws IOException {
+            Map<Integer, Set<Long>> liveRecords = new TreeMap<>();
+            synchronized (this) {
+                flush();
+                index.values().forEach(position -> liveRecords.computeIfAbsent(position.segment, s -> new HashSet<>()).add(position.offset));
+            }
+            List<Callable<List<T>>> tasks = new ArrayList<>(liveRecords.size());
+            liveRecords.forEach((segment, offsets) -> tasks.add(() -> {
+                List<T> result = new ArrayList<>(offsets.size());
+                segmentsLock.readLock().lock();
+                try {
+                    readRecords(segment, offsets, record -> result.add(converter.apply(getIssue(record))));
+                } finally {
+                    segmentsLock.readLock().unlock();
+                }
+                return result;
+            }));
+            return tasks;
+        }
+
+        /**
+         * Rewrites current records into new segments and replaces index with
+         * one pointing to them. Stores wait until compaction is finished.
+         */
+        synchronized void compact() throws IOException {
+            segmentsLock.writeLock().lock();
+            try {
+                flush();
+                compactionScheduled = false;
+                Map<Integer, Set<Long>> liveRecords = new TreeMap<>();
+                index.values().forEach(position -> liveRecords.computeIfAbsent(position.segment, s -> new HashSet<>()).add(position.offset));
+                Set<Integer> oldSegments = listSegments();
+                Map<String, RecordPosition> newIndex = new HashMap<>();
+                ByteArrayOutputStream newSegment = new ByteArrayOutputStream();
+                int firstNewSegment = activeSegment + 1;
+                int[] newSegmentNumber = {firstNewSegment};
+                for (Map.Entry<Integer, Set<Long>> segment : liveRecords.entrySet()) {
+                    readRecords(segment.getKey(), segment.getValue(), record -> {
+                        if (newSegment.size() > 0 && newSegment.size() + record.length > SEGMENT_SIZE) {
+                            writeSegment(newSegmentNumber[0]++, newSegment);
+                        }
+                        newIndex.put(getKey(record), new RecordPosition(newSegmentNumber[0], newSegment.size(), record.length));
+                        newSegment.write(record, 0, record.length);
+                    });
+                }
+                long lastSegmentSize = newSegment.size();
+                writeSegment(newSegmentNumber[0], newSegment);
+                writeIndex(newIndex);
+                for (int segment : oldSegments) {
+                    fileStorage.deleteFile(getSegmentFile(segment));
+                }
+                index.clear();
+                liveBytes = 0;
+                garbageBytes = 0;
+                newIndex.forEach(this::put);
+                activeSegment = newSegmentNumber[0];
+                activeSegmentSize = lastSegmentSize;
+                LOG.debug("Compacted raw issues of {} from {} into {} segments", projectDirectory, oldSegments.size(), activeSegment - firstNewSegment + 1);
+            } finally {
+                segmentsLock.writeLock().unlock();
+            }
+        }
+
+        private void writeSegment(int segment, ByteArrayOutputStream data) throws IOException {
+            try (WritableByteChannel channel = fileStorage.openWriteChannel(getSegmentFile(segment))) {
+                writeFully(channel, ByteBuffer.wrap(data.toByteArray()));
+            }
+            data.reset();
+        }
+
+        private void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void readRecords(int segment, Set<Long> offsets, RecordConsumer consumer) throws IOException {
+            try (RecordReader reader = new RecordReader(fileStorage.openInputStream(getSegmentFile(segment)))) {
+                int found = 0;
+                long offset = 0;
+                for (byte[] record = reader.next(); record != null && found < offsets.size(); record = reader.next()) {
+                    if (offsets.contains(offset)) {
+                        consumer.accept(record);
+                        found++;
+                    }
+                    offset += record.length;
+                }
+                if (found < offsets.size()) {
+                    throw new IOException("Segment " + getSegmentFile(segment) + " is shorter than its index");
+                }
+            }
+        }
+
+        private void put(String issueKey, RecordPosition position) {
+            RecordPosition previous = index.put(issueKey, position);
+            liveBytes += position.length;
+            if (previous != null) {
+                liveBytes -= previous.length;
+                garbageBytes += previous.length;
+            }
+        }
+
+        /**
+         * Closes active segment and appends index entries of records written
+         * to it. Segment is reopened on next store.
+         */
+        synchronized void flush() throws IOException {
+            if (activeSegmentChannel != null) {
+                WritableByteChannel channel = activeSegmentChannel;
+                activeSegmentChannel = null;
+                channel.close();
+            }
+            if (pendingIndexLines.length() > 0) {
+                if (indexLines > 2 * index.size()) {
+                    // most of index entries are outdated, only current ones are written
+                    writeIndex(index);
+                } else {
+                    fileStorage.appendToFile(indexFile, pendingIndexLines.toString());
+                }
+                pendingIndexLines.setLength(0);
+            }
+        }
+
+        /**
+         * Index is written next to current one and moved into its place, so
+         * that current index is intact when writing is interrupted.
+         */
+        private void writeIndex(Map<String, RecordPosition> positions) throws IOException {
+            try (Writer writer = new OutputStreamWriter(fileStorage.openOutputStream(newIndexFile), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, RecordPosition> entry : positions.entrySet()) {
+                    writer.write(toIndexLine(entry.getKey(), entry.getValue()));
+                }
+            }
+            fileStorage.moveFile(newIndexFile, indexFile);
+            indexLines = positions.size();
+        }
+
+        private void appendToIndex(String issueKey, RecordPosition position) {
+            pendingIndexLines.append(toIndexLine(issueKey, position));
+            indexLines++;
+        }
+
+        private String toIndexLine(String issueKey, RecordPosition position) {
+            return issueKey + "\t" + position.segment + "\t" + position.offset + "\t" + position.length + "\n";
+        }
+
+        private Set<Integer> listSegments() {
+            Set<Integer> segments = new HashSet<>();
+            File[] files = projectDirectory.listFiles((dir, name) -> name.matches("\\d+\\" + SEGMENT_EXTENSION));
+            if (files != null) {
+                for (File file : files) {
+                    String name = file.getName();
+                    segments.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_EXTENSION.length())));
+                }
+            }
+            return segments;
+        }
+
+        private File getSegmentFile(int segment) {
+            return new File(projectDirectory, segment + SEGMENT_EXTENSION);
+        }
+    }
+
+    private static String getKey(byte[] record) throws IOException {
+        return new String(record, 0, getSeparatorIndex(record), StandardCharsets.UTF_8);
+    }
+
+    private static JsonNode getIssue(byte[] record) throws IOException {
+        int separator = getSeparatorIndex(record);
+        return OBJECT_MAPPER.readTree(record, separator + 1, record.length - separator - 1);
+    }
+
+    private static int getSeparatorIndex(byte[] record) throws IOException {
+        for (int i = 0; i < record.length; i++) {
+            if (record[i] == '\t') {
+                return i;
+            }
+        }
+        throw new IOException("Malformed raw issue record");
+    }
+
+    private interface RecordConsumer {
+
+        void accept(byte[] record) throws IOException;
+    }
+
+    /**
+     * Splits stream into records ending with new line. Last record is
+     * returned even if it is not terminated, which means it was not written
+     * completely.
+     */
+    private static class RecordReader implements AutoCloseable {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+        private int limit;
+
+        RecordReader(InputStream in) {
+            this.in = in;
+        }
+
+        void skip(long bytes) throws IOException {
+            long remaining = bytes;
+            while (remaining > 0) {
+                if (position == limit && !fill()) {
+                    throw new IOException("Unexpected end of segment");
+                }
+                int skipped = (int) Math.min(remaining, limit - position);
+                position += skipped;
+                remaining -= skipped;
+            }
+        }
+
+        byte[] next() throws IOException {
+            ByteArrayOutputStream record = null;
+            while (true) {
+                if (position == limit && !fill()) {
+                    return record == null ? null : record.toByteArray();
+                }
+                int end = position;
+                while (end < limit && buffer[end] != '\n') {
+                    end++;
+                }
+                boolean complete = end < limit;
+                if (complete) {
+                    end++;
+                }
+                if (record == null) {
+                    record = new ByteArrayOutputStream(complete ? end - position : 2 * (end - position));
+                }
+                record.write(buffer, position, end - position);
+                position = end;
+                if (complete) {
+                    return record.toByteArray();
+                }
+            }
+        }
+
+        private boolean fill() throws IOException {
+            int read = in.read(buffer);
+            if (read <= 0) {
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package pl.kaszaq.howfastyouaregoing.agile.pojo;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
+import pl.kaszaq.howfastyouaregoing.agile.IssueData;
+
+/**
+ * Accumulates changes of a project during an update. Issues are put into one
+ * working map, copy of it is made only when a snapshot of the project is
+ * requested at a checkpoint.
+ */
+public class AgileProjectDataBuilder {
+
+    @Getter
+    private final String projectId;
+    private final Set<String> customFieldsNames;
+    private final Map<String, IssueData> issues;
+    @Getter
+    private ZonedDateTime lastUpdatedIssue;
+    private ZonedDateTime lastUpdated;
+    private AgileProjectStatuses statuses;
+    private List<IssueData> changedIssues = new ArrayList<>();
+    private boolean built;
+
+    public AgileProjectDataBuilder(AgileProjectData projectData, Set<String> customFieldsNames) {
+        this.projectId = projectData.getProjectId();
+        this.customFieldsNames = customFieldsNames;
+        this.issues = new HashMap<>(projectData.getIssues());
+        this.lastUpdatedIssue = projectData.getLastUpdatedIssue();
+        this.lastUpdated = projectData.getLastUpdated();
+        this.statuses = projectData.getStatuses();
+    }
+
+    public AgileProjectDataBuilder statuses(AgileProjectStatuses statuses) {
+        this.statuses = statuses;
+        return this;
+    }
+
+    public AgileProjectDataBuilder lastUpdated(ZonedDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+        return this;
+    }
+
+    public AgileProjectDataBuilder putIssue(IssueData issueData) {
+        checkNotBuilt();
+        if (issueData.getUpdated().isAfter(lastUpdatedIssue)) {
+            lastUpdatedIssue = issueData.getUpdated();
+        }
+        issues.put(issueData.getKey(), issueData);
+        changedIssues.add(issueData);
+        return this;
+    }
+
+    public boolean hasIssues() {
+        return !issues.isEmpty();
+    }
+
+    /**
+     * Issues put since last checkpoint, in the order they were put.
+     */
+    public List<IssueData> getIssuesChangedSinceCheckpoint() {
+        return Collections.unmodifiableList(changedIssues);
+    }
+
+    /**
+     * Creates immutable snapshot of current state of the project. Builder can
+     * still be used afterwards.
+     */
+    public AgileProjectData checkpoint() {
+        checkNotBuilt();
+        changedIssues = new ArrayList<>();
+        return new AgileProjectData(projectId, lastUpdatedIssue, lastUpdated, Collections.unmodifiableMap(new HashMap<>(issues)), customFieldsNames, statuses);
+    }
+
+    /**
+     * Creates final project data handing over the working map without copying
+     * it. Builder must not be used afterwards.
+     */
+    public AgileProjectData build() {
+        checkNotBuilt();
+        built = true;
+        return new AgileProjectData(projectId, lastUpdatedIssue, lastUpdated, Collections.unmodifiableMap(issues), customFieldsNames, statuses);
+    }
+
+    private void checkNotBuilt() {
+        if (built) {
+            throw new IllegalStateException("Project data of " + projectId + " was already built");
+        }
+    }
+}
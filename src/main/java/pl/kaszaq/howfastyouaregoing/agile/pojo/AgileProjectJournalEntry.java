@@ -0,0 +1,18 @@
+package pl.kaszaq.howfastyouaregoing.agile.pojo;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import lombok.Value;
+import pl.kaszaq.howfastyouaregoing.agile.IssueData;
+
+/**
+ * Single line of project journal - issues changed since previous checkpoint
+ * together with project level data valid at the time of the checkpoint.
+ */
+@Value
+public class AgileProjectJournalEntry {
+    ZonedDateTime lastUpdatedIssue;
+    ZonedDateTime lastUpdated;
+    AgileProjectStatuses statuses;
+    List<IssueData> issues;
+}
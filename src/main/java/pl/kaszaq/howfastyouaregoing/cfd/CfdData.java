@@ -24,8 +24,37 @@ public class CfdData {
         DailyStatusChanges item = cfdItems.computeIfAbsent(eventDate, date -> new DailyStatusChanges());
         item.transitionedToStatus(toStatus);
         item.transitionedFromStatus(fromStatus);
+        item.transitions++;
+    }
+
+    /**
+     * Reverts {@link #addTransition(IssueStatusTransition)} of the same
+     * transition. Day is removed once all its transitions are removed.
+     */
+    void removeTransition(IssueStatusTransition transition) {
+        removeTransition(LocalDate.from(transition.getDate()), transition.getFromStatus(), transition.getToStatus());
+    }
+
+    void removeTransition(LocalDate eventDate, String fromStatus, String toStatus) {
+        if (toStatus.equals(fromStatus)) {
+            return;
+        }
+        DailyStatusChanges item = cfdItems.get(eventDate);
+        item.transitionedToStatus(fromStatus);
+        item.transitionedFromStatus(toStatus);
+        if (--item.transitions == 0) {
+            cfdItems.remove(eventDate);
+        }
     }
     
+    /**
+     * Adds all transitions collected by other data to this one.
+     */
+    CfdData merge(CfdData other) {
+        other.cfdItems.forEach((date, changes) -> cfdItems.merge(date, changes, DailyStatusChanges::merge));
+        return this;
+    }
+
     public SortedMap<LocalDate, DailyStatusChanges> getDailyTransitions(){
         return Collections.unmodifiableSortedMap(cfdItems);
     }
@@ -33,6 +62,7 @@ public class CfdData {
     public static class DailyStatusChanges {
 
         private final Map<String, Integer> statusChanges = new HashMap<>();
+        private int transitions;
 
         public Map<String, Integer> getStatusChanges() {
             return statusChanges;
@@ -46,6 +76,12 @@ public class CfdData {
             statusChanges.merge(fromStatus, -1, Integer::sum);
         }
 
+        private DailyStatusChanges merge(DailyStatusChanges other) {
+            other.statusChanges.forEach((status, change) -> statusChanges.merge(status, change, Integer::sum));
+            transitions += other.transitions;
+            return this;
+        }
+
         public int getValueChangeForStatus(String status) {
             return statusChanges.getOrDefault(status, 0);
         }
@@ -9,11 +9,16 @@ import java.util.function.Supplier;
 import java.util.stream.Collector;
 import pl.kaszaq.howfastyouaregoing.agile.IssueStatusTransition;
 
+/**
+ * Collects status transitions into {@link CfdData}. Transitions are only
+ * counted so their order does not matter and collector may be used with
+ * parallel streams.
+ */
 public class CfdDataCollector implements Collector<IssueStatusTransition, CfdData, CfdData> {
 
     @Override
     public Set<Characteristics> characteristics() {
-        return ImmutableSet.of(Characteristics.IDENTITY_FINISH);
+        return ImmutableSet.of(Characteristics.IDENTITY_FINISH, Characteristics.UNORDERED);
     }
 
     @Override
@@ -28,14 +33,12 @@ public class CfdDataCollector implements Collector<IssueStatusTransition, CfdDat
 
     @Override
     public BinaryOperator<CfdData> combiner() {
-        return (CfdData a, CfdData b) -> {
-            throw new UnsupportedOperationException("Not supported yet.");
-        };
+        return CfdData::merge;
     }
 
     @Override
     public Function<CfdData, CfdData> finisher() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return Function.identity();
     }
 
 }
@@ -1,18 +1,133 @@
 package pl.kaszaq.howfastyouaregoing.cfd;
 
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 import lombok.experimental.UtilityClass;
 import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
 import pl.kaszaq.howfastyouaregoing.agile.Issue;
+import pl.kaszaq.howfastyouaregoing.agile.IssueStatusTransition;
+import static pl.kaszaq.howfastyouaregoing.clock.HFYAGClock.getClock;
 
 @UtilityClass
 public class CfdDataComputer {
 
     public CfdData calculateCfdData(AgileProject agileProject, Predicate<Issue> filter) {
-        return agileProject.getAllIssues().stream()
-                .filter(filter)
+        return agileProject.getIssues(filter).parallelStream()
                 .flatMap(issue -> issue.getIssueStatusTransitions().stream())
                 .collect(new CfdDataCollector());
     }
 
+    /**
+     * Cumulative flow of issues matching filter with statuses ordered by
+     * {@link AgileProject#getProbableStatusOrder()}. Transitions from or to
+     * statuses outside of that order are not counted.
+     */
+    public CfdMatrix calculateCfdMatrix(AgileProject agileProject, Predicate<Issue> filter) {
+        List<Issue> issues = agileProject.getIssues(filter);
+        List<String> statuses = agileProject.getProbableStatusOrder();
+        Map<String, Integer> statusIndexes = new HashMap<>();
+        for (int i = 0; i < statuses.size(); i++) {
+            statusIndexes.put(statuses.get(i), i);
+        }
+        StatusChangesByDay changes = new StatusChangesByDay(statuses.size());
+        for (Issue issue : issues) {
+            for (IssueStatusTransition transition : issue.getIssueStatusTransitions()) {
+                long day = transition.getDate().toLocalDate().toEpochDay();
+                // every transition extends the range of days, even when not counted
+                int[] dayChanges = changes.getDay(day);
+                if (transition.getToStatus().equals(transition.getFromStatus())) {
+                    continue;
+                }
+                int offset = changes.getOffset(day);
+                Integer toStatus = statusIndexes.get(transition.getToStatus());
+                if (toStatus != null) {
+                    dayChanges[offset + toStatus]++;
+                }
+                Integer fromStatus = statusIndexes.get(transition.getFromStatus());
+                if (fromStatus != null) {
+                    dayChanges[offset + fromStatus]--;
+                }
+            }
+        }
+        if (changes.isEmpty()) {
+            return new CfdMatrix(LocalDate.now(getClock()), statuses, new int[0][statuses.size()]);
+        }
+        return new CfdMatrix(LocalDate.ofEpochDay(changes.firstDay), statuses, changes.toCumulativeCounts());
+    }
+
+    /**
+     * Changes of number of issues in each status per day, kept in one flat
+     * array which grows towards earlier or later days as transitions come,
+     * so that transitions are walked only once.
+     */
+    private static class StatusChangesByDay {
+
+        private static final int INITIAL_DAYS = 64;
+
+        private final int statusCount;
+        private int[] changes;
+        private long arrayFirstDay;
+        private int arrayDays;
+        private long firstDay = Long.MAX_VALUE;
+        private long lastDay = Long.MIN_VALUE;
+
+        StatusChangesByDay(int statusCount) {
+            this.statusCount = statusCount;
+        }
+
+        boolean isEmpty() {
+            return firstDay > lastDay;
+        }
+
+        /**
+         * Returns array holding changes of given day, starting at
+         * {@link #getOffset(long)}, growing it when needed.
+         */
+        int[] getDay(long day) {
+            if (changes == null) {
+                arrayDays = INITIAL_DAYS;
+                arrayFirstDay = day - INITIAL_DAYS / 2;
+                changes = new int[arrayDays * statusCount];
+            } else if (day < arrayFirstDay || day >= arrayFirstDay + arrayDays) {
+                grow(day);
+            }
+            firstDay = Math.min(firstDay, day);
+            lastDay = Math.max(lastDay, day);
+            return changes;
+        }
+
+        int getOffset(long day) {
+            return (int) (day - arrayFirstDay) * statusCount;
+        }
+
+        private void grow(long day) {
+            long newFirstDay = Math.min(firstDay, day);
+            long newLastDay = Math.max(lastDay, day);
+            int newArrayDays = Math.max(2 * arrayDays, Math.toIntExact(2 * (newLastDay - newFirstDay + 1)));
+            // room is left on the side the range is growing towards
+            long newArrayFirstDay = day < arrayFirstDay ? newLastDay - newArrayDays + 1 : newFirstDay;
+            int[] newChanges = new int[Math.multiplyExact(newArrayDays, statusCount)];
+            System.arraycopy(changes, getOffset(firstDay), newChanges, (int) (firstDay - newArrayFirstDay) * statusCount,
+                    (int) (lastDay - firstDay + 1) * statusCount);
+            changes = newChanges;
+            arrayFirstDay = newArrayFirstDay;
+            arrayDays = newArrayDays;
+        }
+
+        int[][] toCumulativeCounts() {
+            int[][] counts = new int[Math.toIntExact(lastDay - firstDay + 1)][statusCount];
+            int offset = getOffset(firstDay);
+            for (int day = 0; day < counts.length; day++) {
+                for (int status = 0; status < statusCount; status++) {
+                    int previous = day == 0 ? 0 : counts[day - 1][status];
+                    counts[day][status] = previous + changes[offset + day * statusCount + status];
+                }
+            }
+            return counts;
+        }
+    }
+
 }
@@ -0,0 +1,46 @@
+package pl.kaszaq.howfastyouaregoing.cfd;
+
+import java.time.LocalDate;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Cumulative flow data as dense matrix: for every day from the first till the
+ * last day with status transitions, number of issues in each status at the
+ * end of that day. Rows are days, columns are statuses in order of
+ * {@link #getStatuses()}.
+ */
+@Getter
+@AllArgsConstructor
+public class CfdMatrix {
+
+    private final LocalDate firstDay;
+    private final List<String> statuses;
+    /**
+     * Cumulative counts indexed by [day][status], shared - should not be
+     * modified.
+     */
+    private final int[][] counts;
+
+    public int getDaysCount() {
+        return counts.length;
+    }
+
+    public LocalDate getDay(int dayIndex) {
+        return firstDay.plusDays(dayIndex);
+    }
+
+    /**
+     * @return number of issues in status at the end of the day, 0 for days
+     * outside of the matrix and statuses not in it
+     */
+    public int getCount(LocalDate day, String status) {
+        int statusIndex = statuses.indexOf(status);
+        if (statusIndex < 0 || counts.length == 0 || day.isBefore(firstDay)) {
+            return 0;
+        }
+        long dayIndex = day.toEpochDay() - firstDay.toEpochDay();
+        return counts[(int) Math.min(dayIndex, counts.length - 1)][statusIndex];
+    }
+}
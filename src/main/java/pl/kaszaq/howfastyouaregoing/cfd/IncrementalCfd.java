@@ -0,0 +1,129 @@
+package pl.kaszaq.howfastyouaregoing.cfd;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProjectDataObserver;
+import pl.kaszaq.howfastyouaregoing.agile.Issue;
+import pl.kaszaq.howfastyouaregoing.agile.IssueData;
+import pl.kaszaq.howfastyouaregoing.agile.IssueStatusTransition;
+import pl.kaszaq.howfastyouaregoing.agile.pojo.AgileProjectData;
+
+/**
+ * Cumulative flow data of a project kept up to date between project reloads.
+ * Pass it as observer when loading the project, readers report which issues
+ * changed and on {@link #update(AgileProject)} only transitions of those
+ * issues are removed and added again.
+ *
+ * <pre>
+ * IncrementalCfd cfd = new IncrementalCfd(filter);
+ * cfd.update(provider.loadProject("AWW", configuration, cfd).get());
+ * // later
+ * cfd.update(provider.loadProject("AWW", configuration, cfd).get());
+ * </pre>
+ *
+ * Result is the same as of {@link CfdDataComputer#calculateCfdData} for the
+ * last project given. Project has to be loaded with the same status mapping
+ * each time.
+ */
+public class IncrementalCfd implements AgileProjectDataObserver {
+
+    private final Predicate<Issue> filter;
+    private final Set<String> changedIssues = new HashSet<>();
+    // day (epoch day), from and to status id of every counted transition, enough to subtract them again
+    private final Map<String, int[]> countedTransitions = new HashMap<>();
+    private final List<String> statuses = new ArrayList<>();
+    private final Map<String, Integer> statusIds = new HashMap<>();
+    private CfdData cfdData;
+    private String projectId;
+    private boolean rebuildRequired = true;
+
+    public IncrementalCfd(Predicate<Issue> filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public synchronized void updated(AgileProjectData data, double progress) {
+        rebuildRequired = true;
+    }
+
+    @Override
+    public synchronized void updated(AgileProjectData data, Collection<IssueData> changedIssues, double progress) {
+        changedIssues.forEach(issue -> this.changedIssues.add(issue.getKey()));
+    }
+
+    /**
+     * Applies changes reported since previous update.
+     *
+     * @param project - project loaded with this instance as observer
+     * @return current cumulative flow data, it is modified by subsequent
+     * updates
+     */
+    public synchronized CfdData update(AgileProject project) {
+        if (rebuildRequired || cfdData == null || !project.getId().equals(projectId)) {
+            rebuild(project);
+        } else {
+            for (String issueKey : changedIssues) {
+                int[] transitions = countedTransitions.remove(issueKey);
+                if (transitions != null) {
+                    subtract(transitions);
+                }
+                Issue issue = project.getIssue(issueKey);
+                if (issue != null) {
+                    count(issue);
+                }
+            }
+        }
+        changedIssues.clear();
+        return cfdData;
+    }
+
+    public synchronized CfdData getCfdData() {
+        return cfdData;
+    }
+
+    private void rebuild(AgileProject project) {
+        cfdData = new CfdData();
+        countedTransitions.clear();
+        statuses.clear();
+        statusIds.clear();
+        project.getAllIssues().forEach(this::count);
+        projectId = project.getId();
+        rebuildRequired = false;
+    }
+
+    private void count(Issue issue) {
+        if (filter.test(issue)) {
+            List<IssueStatusTransition> transitions = issue.getIssueStatusTransitions();
+            int[] counted = new int[3 * transitions.size()];
+            int i = 0;
+            for (IssueStatusTransition transition : transitions) {
+                cfdData.addTransition(transition);
+                counted[i++] = Math.toIntExact(LocalDate.from(transition.getDate()).toEpochDay());
+                counted[i++] = getStatusId(transition.getFromStatus());
+                counted[i++] = getStatusId(transition.getToStatus());
+            }
+            countedTransitions.put(issue.getKey(), counted);
+        }
+    }
+
+    private void subtract(int[] transitions) {
+        for (int i = 0; i < transitions.length; i += 3) {
+            cfdData.removeTransition(LocalDate.ofEpochDay(transitions[i]), statuses.get(transitions[i + 1]), statuses.get(transitions[i + 2]));
+        }
+    }
+
+    private int getStatusId(String status) {
+        return statusIds.computeIfAbsent(status, s -> {
+            statuses.add(s);
+            return statuses.size() - 1;
+        });
+    }
+}
@@ -1,16 +1,25 @@
 package pl.kaszaq.howfastyouaregoing.cycletime;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.function.Predicate;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
 import lombok.experimental.UtilityClass;
 import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
 import pl.kaszaq.howfastyouaregoing.agile.Issue;
-import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.inStatus;
+import static pl.kaszaq.howfastyouaregoing.agile.IssueFilters.inStatus;
 import pl.kaszaq.howfastyouaregoing.agile.IssueStatusTransition;
+import static pl.kaszaq.howfastyouaregoing.clock.HFYAGClock.getClock;
 
 /**
  *
@@ -18,39 +27,103 @@ import pl.kaszaq.howfastyouaregoing.agile.IssueStatusTransition;
  */
 @UtilityClass
 public class CycleTimeComputer {
-// TODO: add tests
 
     public SortedMap<LocalDate, Double> calulcateCycleTime(
             AgileProject agileProject, 
             Predicate<Issue> filters, 
             Set<String> finalStatuses, 
             String... statusNames) {
-        SortedMap<LocalDate, Double> cycleTimeStatistics = new TreeMap<>(agileProject.getAllIssues()
+        Set<String> statuses = new HashSet<>(Arrays.asList(statusNames));
+        SortedMap<LocalDate, Double> cycleTimeStatistics = new TreeMap<>(agileProject.getIssues(inStatus(finalStatuses).and(filters))
                 .stream()
-                .filter(filters)
-                .filter(inStatus(finalStatuses))
-                .filter(i -> i.getIssueStatusTransitions()
-                .stream()
-                .anyMatch(st -> finalStatuses.contains(st.getToStatus()))
-                )
-                .collect(Collectors.groupingBy(i -> getClosedDate(i, finalStatuses),
-                        Collectors.averagingDouble(i -> ((double) i.getDurationInStatuses(statusNames).getSeconds()) / 3600.0)
+                .map(i -> getCycleTime(i, finalStatuses, statuses))
+                .filter(cycleTime -> cycleTime.closedDate != null)
+                .collect(Collectors.groupingBy(cycleTime -> cycleTime.closedDate,
+                        Collectors.averagingDouble(cycleTime -> cycleTime.hours)
                 )));
         return cycleTimeStatistics;
     }
 
-    private LocalDate getClosedDate(Issue i, Set<String> finalStatuses) {
-        LocalDate returnDate = null;
+    /**
+     * Distribution of cycle time (in hours spent in given statuses) of issues
+     * closed in each period, identified by its first day. Issues are
+     * processed in parallel, each in a single walk over its transitions.
+     * Results of different projects can be combined with
+     * {@link #mergeCycleTimeDistributions(Collection)}.
+     */
+    public SortedMap<LocalDate, QuantileSketch> calculateCycleTimeDistribution(
+            AgileProject agileProject,
+            Predicate<Issue> filters,
+            Set<String> finalStatuses,
+            CycleTimePeriod period,
+            String... statusNames) {
+        Set<String> statuses = new HashSet<>(Arrays.asList(statusNames));
+        return agileProject.getIssues(inStatus(finalStatuses).and(filters))
+                .parallelStream()
+                .collect(Collector.of(
+                        TreeMap<LocalDate, QuantileSketch>::new,
+                        (sketches, issue) -> {
+                            CycleTime cycleTime = getCycleTime(issue, finalStatuses, statuses);
+                            if (cycleTime.closedDate != null) {
+                                sketches.computeIfAbsent(period.getPeriodStart(cycleTime.closedDate), d -> new QuantileSketch())
+                                        .add(cycleTime.hours);
+                            }
+                        },
+                        CycleTimeComputer::mergeInto,
+                        Collector.Characteristics.UNORDERED));
+    }
+
+    /**
+     * Merges distributions calculated for instance for different projects.
+     * Given sketches are not modified.
+     */
+    public SortedMap<LocalDate, QuantileSketch> mergeCycleTimeDistributions(Collection<? extends SortedMap<LocalDate, QuantileSketch>> distributions) {
+        TreeMap<LocalDate, QuantileSketch> result = new TreeMap<>();
+        distributions.forEach(distribution -> mergeInto(result, distribution));
+        return result;
+    }
+
+    private TreeMap<LocalDate, QuantileSketch> mergeInto(TreeMap<LocalDate, QuantileSketch> target, Map<LocalDate, QuantileSketch> source) {
+        source.forEach((date, sketch) -> target.computeIfAbsent(date, d -> new QuantileSketch(sketch.getRelativeAccuracy())).merge(sketch));
+        return target;
+    }
+
+    /**
+     * Finds the day issue got into final statuses for the last time and sums
+     * time it spent in given statuses (until now if it is still in one of
+     * them) in the same walk over its transitions.
+     */
+    private CycleTime getCycleTime(Issue i, Set<String> finalStatuses, Set<String> statuses) {
+        LocalDate closedDate = null;
         boolean previousWasClosed = false;
+        Duration timeInStatuses = Duration.ZERO;
+        Instant enteredStatus = null;
         for (IssueStatusTransition issueStatusTransition : i.getIssueStatusTransitions()) {
-            if (!previousWasClosed && (finalStatuses.contains(issueStatusTransition.getToStatus()))) {
-                returnDate = issueStatusTransition.getDate().toLocalDate();
-                previousWasClosed = true;
-            } else if (!finalStatuses.contains(issueStatusTransition.getToStatus())) {
-                previousWasClosed = false;
+            Instant date = issueStatusTransition.getDate().toInstant();
+            if (enteredStatus != null) {
+                timeInStatuses = timeInStatuses.plus(Duration.between(enteredStatus, date));
+                enteredStatus = null;
+            }
+            if (statuses.contains(issueStatusTransition.getToStatus())) {
+                enteredStatus = date;
             }
+            boolean closed = finalStatuses.contains(issueStatusTransition.getToStatus());
+            if (closed && !previousWasClosed) {
+                closedDate = issueStatusTransition.getDate().toLocalDate();
+            }
+            previousWasClosed = closed;
+        }
+        if (enteredStatus != null) {
+            timeInStatuses = timeInStatuses.plus(Duration.between(enteredStatus, getClock().instant()));
         }
-        return returnDate;
+        return new CycleTime(closedDate, ((double) timeInStatuses.getSeconds()) / 3600.0);
+    }
+
+    @AllArgsConstructor
+    private static class CycleTime {
+
+        private final LocalDate closedDate;
+        private final double hours;
     }
 
 }
@@ -0,0 +1,32 @@
+package pl.kaszaq.howfastyouaregoing.cycletime;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Period in which cycle times of closed issues are grouped, identified by its
+ * first day.
+ */
+public enum CycleTimePeriod {
+    DAY {
+        @Override
+        public LocalDate getPeriodStart(LocalDate date) {
+            return date;
+        }
+    },
+    WEEK {
+        @Override
+        public LocalDate getPeriodStart(LocalDate date) {
+            return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+    },
+    MONTH {
+        @Override
+        public LocalDate getPeriodStart(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+    };
+
+    public abstract LocalDate getPeriodStart(LocalDate date);
+}
@@ -2,54 +2,135 @@ package pl.kaszaq.howfastyouaregoing.http;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.ParseException;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
 import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
 
+/**
+ * Blocking http client with pooled connections. Asynchronous methods are a
+ * wrapper running blocking requests on a pool of threads as large as
+ * {@link HttpClientSettings#getMaxConnectionsPerRoute()}, so the number of
+ * concurrent requests is limited by threads. Idle threads are released after
+ * a while, {@link #close()} stops them and closes connections.
+ */
 @Slf4j
 public class HttpClient implements AutoCloseable {
 
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+
     private final CloseableHttpClient httpClient;
+    private final ExecutorService asyncExecutor;
 
     public HttpClient(String jsessionId) {
-        httpClient = HttpClients.custom()
-                .useSystemProperties()
-                .setDefaultHeaders(Lists.newArrayList(
-                        new BasicHeader("Cookie", "JSESSIONID=" + jsessionId)))
-                .build();
+        this(jsessionId, HttpClientSettings.builder().build());
+    }
+
+    public HttpClient(String jsessionId, HttpClientSettings settings) {
+        this(settings, new BasicHeader("Cookie", "JSESSIONID=" + jsessionId));
     }
 
     public HttpClient(String username, String password) {
-        String encodedCredentials = Base64.getEncoder().encodeToString((username + ":" + password).getBytes());
-        httpClient = HttpClients.custom()
+        this(username, password, HttpClientSettings.builder().build());
+    }
+
+    public HttpClient(String username, String password, HttpClientSettings settings) {
+        this(settings, new BasicHeader("Authorization", "Basic "
+                + Base64.getEncoder().encodeToString((username + ":" + password).getBytes())));
+    }
+
+    private HttpClient(HttpClientSettings settings, Header authenticationHeader) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(settings.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(settings.getMaxConnectionsPerRoute());
+        HttpClientBuilder builder = HttpClients.custom()
                 .useSystemProperties()
-                .setDefaultHeaders(Lists.newArrayList(
-                        new BasicHeader("Authorization", "Basic " + encodedCredentials)))
-                .build();
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy(settings.getKeepAliveMillis()))
+                .evictIdleConnections(settings.getKeepAliveMillis(), TimeUnit.MILLISECONDS)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(settings.getConnectTimeoutMillis())
+                        .setSocketTimeout(settings.getSocketTimeoutMillis())
+                        .build())
+                .setDefaultHeaders(Lists.newArrayList(authenticationHeader));
+        if (!settings.isCompressionEnabled()) {
+            // otherwise "Accept-Encoding: gzip,deflate" is sent and responses are decompressed transparently
+            builder.disableContentCompression();
+        }
+        httpClient = builder.build();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(settings.getMaxConnectionsPerRoute(), settings.getMaxConnectionsPerRoute(),
+                IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
+                .setNameFormat("http-client-%d")
+                .setDaemon(true)
+                .build());
+        // client which is not closed does not keep threads once it is not used
+        executor.allowCoreThreadTimeOut(true);
+        asyncExecutor = executor;
+    }
+
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(long defaultKeepAliveMillis) {
+        return (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : defaultKeepAliveMillis;
+        };
     }
 
     public String get(String url) throws IOException {
+        return get(url, HttpClient::readString);
+    }
+
+    public <T> T get(String url, ResponseReader<T> responseReader) throws IOException {
+        return get(url, streamReader(responseReader));
+    }
+
+    private <T> T get(String url, EntityReader<T> entityReader) throws IOException {
         HttpGet httpGet = new HttpGet(url);
         LOG.info("Executing GET request {}", httpGet.getRequestLine());
         try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-            return EntityUtils.toString(response.getEntity(), "UTF-8");
+            return readResponse(response, entityReader);
         }
     }
 
     public String postJson(String url, Object object)
             throws IOException, JsonProcessingException, UnsupportedCharsetException, ParseException {
+        return postJson(url, object, HttpClient::readString);
+    }
+
+    public <T> T postJson(String url, Object object, ResponseReader<T> responseReader)
+            throws IOException, JsonProcessingException, UnsupportedCharsetException {
+        return postJson(url, object, streamReader(responseReader));
+    }
+
+    private <T> T postJson(String url, Object object, EntityReader<T> entityReader)
+            throws IOException, JsonProcessingException, UnsupportedCharsetException {
         HttpPost post = new HttpPost(url);
         String entity = OBJECT_MAPPER.writeValueAsString(object);
 
@@ -58,15 +139,96 @@ public class HttpClient implements AutoCloseable {
                 entity,
                 ContentType.APPLICATION_JSON);
         post.setEntity(requestEntity);
-        String response;
         try (CloseableHttpResponse httpResponse = httpClient.execute(post)) {
-            response = EntityUtils.toString(httpResponse.getEntity(), "UTF-8");
+            return readResponse(httpResponse, entityReader);
+        }
+    }
+
+    private <T> T readResponse(CloseableHttpResponse response, EntityReader<T> entityReader) throws IOException {
+        HttpEntity entity = response.getEntity();
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode < 200 || statusCode >= 300) {
+            EntityUtils.consume(entity);
+            throw new IOException("Unexpected response " + response.getStatusLine());
         }
-        return response;
+        if (entity == null) {
+            throw new IOException("Empty response " + response.getStatusLine());
+        }
+        try {
+            return entityReader.read(entity);
+        } finally {
+            EntityUtils.consume(entity);
+        }
+    }
+
+    /**
+     * Charset declared by the server is used, UTF-8 only when none is given.
+     */
+    private static String readString(HttpEntity entity) throws IOException {
+        return EntityUtils.toString(entity, StandardCharsets.UTF_8);
+    }
+
+    private static <T> EntityReader<T> streamReader(ResponseReader<T> responseReader) {
+        return entity -> {
+            try (InputStream content = entity.getContent()) {
+                return responseReader.read(content);
+            }
+        };
+    }
+
+    /**
+     * Executes blocking {@link #get(String)} on one of pool threads.
+     */
+    public CompletableFuture<String> getAsync(String url) {
+        return async(() -> get(url));
+    }
+
+    public <T> CompletableFuture<T> getAsync(String url, ResponseReader<T> responseReader) {
+        return async(() -> get(url, responseReader));
+    }
+
+    public CompletableFuture<String> postJsonAsync(String url, Object object) {
+        return async(() -> postJson(url, object));
     }
 
+    public <T> CompletableFuture<T> postJsonAsync(String url, Object object, ResponseReader<T> responseReader) {
+        return async(() -> postJson(url, object, responseReader));
+    }
+
+    private <T> CompletableFuture<T> async(HttpCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            asyncExecutor.execute(() -> {
+                try {
+                    result.complete(call.execute());
+                } catch (Throwable ex) {
+                    result.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(new IOException("Http client is closed", ex));
+        }
+        return result;
+    }
+
+    /**
+     * Requests already started are finished, new ones are rejected.
+     */
     @Override
-    public void close() throws Exception {
+    public void close() throws IOException {
+        asyncExecutor.shutdown();
         httpClient.close();
     }
+
+    @FunctionalInterface
+    private interface HttpCall<T> {
+
+        T execute() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface EntityReader<T> {
+
+        T read(HttpEntity entity) throws IOException;
+    }
 }
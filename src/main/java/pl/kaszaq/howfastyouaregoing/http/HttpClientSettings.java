@@ -0,0 +1,41 @@
+package pl.kaszaq.howfastyouaregoing.http;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Settings of connection pool used by {@link HttpClient}.
+ */
+@Builder
+@Getter
+@ToString
+public class HttpClientSettings {
+
+    /**
+     * Maximum number of connections kept in pool in total.
+     */
+    @Builder.Default
+    private final int maxConnections = 20;
+    /**
+     * Maximum number of connections to single host, this also limits how many
+     * asynchronous requests are executed at the same time.
+     */
+    @Builder.Default
+    private final int maxConnectionsPerRoute = 8;
+    /**
+     * How long idle connection is kept alive when server did not say
+     * otherwise.
+     */
+    @Builder.Default
+    private final long keepAliveMillis = 30_000;
+    @Builder.Default
+    private final int connectTimeoutMillis = 30_000;
+    @Builder.Default
+    private final int socketTimeoutMillis = 120_000;
+    /**
+     * Whether gzip/deflate compressed responses should be requested.
+     */
+    @Builder.Default
+    private final boolean compressionEnabled = true;
+}
@@ -0,0 +1,14 @@
+package pl.kaszaq.howfastyouaregoing.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads body of http response directly from its stream, so that the response
+ * does not have to be buffered in memory as a whole.
+ */
+@FunctionalInterface
+public interface ResponseReader<T> {
+
+    T read(InputStream content) throws IOException;
+}
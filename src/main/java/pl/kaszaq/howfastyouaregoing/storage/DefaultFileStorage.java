@@ -15,9 +15,21 @@
  */
 package pl.kaszaq.howfastyouaregoing.storage;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import org.apache.commons.io.FileUtils;
 
 public class DefaultFileStorage implements FileStorage {
@@ -32,4 +44,63 @@ public class DefaultFileStorage implements FileStorage {
         FileUtils.writeStringToFile(file, data, "UTF-8");
     }
 
+    @Override
+    public InputStream openInputStream(File file) throws IOException {
+        return new BufferedInputStream(FileUtils.openInputStream(file));
+    }
+
+    @Override
+    public OutputStream openOutputStream(File file) throws IOException {
+        return new BufferedOutputStream(FileUtils.openOutputStream(file));
+    }
+
+    @Override
+    public ReadableByteChannel openReadChannel(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    @Override
+    public WritableByteChannel openWriteChannel(File file) throws IOException {
+        createParentDirectory(file);
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public WritableByteChannel openAppendingChannel(File file) throws IOException {
+        createParentDirectory(file);
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void appendToFile(File file, String data) throws IOException {
+        try (WritableByteChannel channel = openAppendingChannel(file)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    @Override
+    public void moveFile(File source, File target) throws IOException {
+        Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public InputStream openBinaryInputStream(File file) throws IOException {
+        return new BufferedInputStream(Channels.newInputStream(openReadChannel(file)));
+    }
+
+    @Override
+    public OutputStream openBinaryOutputStream(File file) throws IOException {
+        return new BufferedOutputStream(Channels.newOutputStream(openWriteChannel(file)));
+    }
+
+    private static void createParentDirectory(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null) {
+            FileUtils.forceMkdir(parent);
+        }
+    }
+
 }
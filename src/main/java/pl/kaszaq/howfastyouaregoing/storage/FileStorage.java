@@ -15,8 +15,18 @@
  */
 package pl.kaszaq.howfastyouaregoing.storage;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
 
 public interface FileStorage {
 
@@ -24,4 +34,105 @@ public interface FileStorage {
 
     public void storeFile(File fileName, String data) throws IOException;
 
+    /**
+     * Opens stream with content of the file as UTF-8 bytes. Default
+     * implementation reads whole file with {@link #loadFile(File)}, storages
+     * able to stream should override it.
+     */
+    public default InputStream openInputStream(File fileName) throws IOException {
+        return new ByteArrayInputStream(loadFile(fileName).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens stream replacing content of the file. Data written has to be UTF-8
+     * text. Default implementation collects it in memory and stores it with
+     * {@link #storeFile(File, String)} when stream is closed.
+     */
+    public default OutputStream openOutputStream(File fileName) throws IOException {
+        return new ByteArrayOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    storeFile(fileName, new String(toByteArray(), StandardCharsets.UTF_8));
+                }
+            }
+        };
+    }
+
+    public default ReadableByteChannel openReadChannel(File fileName) throws IOException {
+        return Channels.newChannel(openInputStream(fileName));
+    }
+
+    public default WritableByteChannel openWriteChannel(File fileName) throws IOException {
+        return Channels.newChannel(openOutputStream(fileName));
+    }
+
+    /**
+     * Opens channel appending to the end of the file, creating it when it
+     * does not exist. Data written has to be UTF-8 text. Default
+     * implementation collects it in memory and appends it with
+     * {@link #appendToFile(File, String)} when channel is closed.
+     */
+    public default WritableByteChannel openAppendingChannel(File fileName) throws IOException {
+        return Channels.newChannel(new ByteArrayOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    appendToFile(fileName, new String(toByteArray(), StandardCharsets.UTF_8));
+                }
+            }
+        });
+    }
+
+    /**
+     * Appends data to the end of the file, creating it when it does not
+     * exist. Default implementation rewrites whole file, storages able to
+     * append natively should override it.
+     */
+    public default void appendToFile(File fileName, String data) throws IOException {
+        if (fileName.exists()) {
+            storeFile(fileName, loadFile(fileName) + data);
+        } else {
+            storeFile(fileName, data);
+        }
+    }
+
+    /**
+     * Opens stream with content of binary file. Default implementation keeps
+     * binary data as Base64 text decoded from {@link #openInputStream(File)},
+     * storages able to store bytes directly should override both binary
+     * methods.
+     */
+    public default InputStream openBinaryInputStream(File fileName) throws IOException {
+        return Base64.getDecoder().wrap(openInputStream(fileName));
+    }
+
+    /**
+     * Opens stream replacing content of binary file, by default Base64
+     * encoded into {@link #openOutputStream(File)}.
+     */
+    public default OutputStream openBinaryOutputStream(File fileName) throws IOException {
+        return Base64.getEncoder().wrap(openOutputStream(fileName));
+    }
+
+    /**
+     * Replaces target file with source file. Default implementation copies
+     * content with {@link #loadFile(File)} and {@link #storeFile(File, String)}
+     * which is not atomic, storages able to rename files should override it.
+     */
+    public default void moveFile(File source, File target) throws IOException {
+        storeFile(target, loadFile(source));
+        deleteFile(source);
+    }
+
+    public default void deleteFile(File fileName) throws IOException {
+        Files.deleteIfExists(fileName.toPath());
+    }
+
 }
@@ -16,6 +16,18 @@ public class WorkloadDailyReport {
         totalWorkloadOnIssues += value;
     }
 
+    /**
+     * Adds workload reported in other report, for instance of other project on
+     * the same day, to this one.
+     *
+     * @return this report
+     */
+    public WorkloadDailyReport merge(WorkloadDailyReport other) {
+        other.reportedWorkLoadOnIssue.forEach((issue, value) -> reportedWorkLoadOnIssue.merge(issue, value, Double::sum));
+        totalWorkloadOnIssues += other.totalWorkloadOnIssues;
+        return this;
+    }
+
     /**
      * Returns as percentage per each issue from the total workload
      * calculated.Sum should be +/- 100 - the offset from 100 is caused by
@@ -1,22 +1,26 @@
 package pl.kaszaq.howfastyouaregoing.workload;
 
+import com.google.common.collect.ImmutableSet;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import pl.kaszaq.howfastyouaregoing.agile.AgileClient;
 import pl.kaszaq.howfastyouaregoing.agile.Issue;
-import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.hasSubtasks;
-import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.inResolution;
-import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.inStatusOnDay;
-import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.isBlockedEntireDay;
-import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.isEpic;
-import pl.kaszaq.howfastyouaregoing.agile.grouping.IssueHierarchyNode;
+import static pl.kaszaq.howfastyouaregoing.agile.IssueFilters.hasSubtasks;
+import static pl.kaszaq.howfastyouaregoing.agile.IssueFilters.inResolution;
+import static pl.kaszaq.howfastyouaregoing.agile.IssueFilters.isEpic;
 import pl.kaszaq.howfastyouaregoing.agile.grouping.IssueHierarchyNodeProvider;
+import static pl.kaszaq.howfastyouaregoing.utils.CommonPredicates.alwaysTrue;
 
 /**
  *
@@ -26,46 +30,153 @@ import pl.kaszaq.howfastyouaregoing.agile.grouping.IssueHierarchyNodeProvider;
 @Slf4j
 public class WorkloadReportFactory {
 
+    private static final int MIN_DAYS_PER_CHUNK = 32;
+
     private final AgileClient agileClient;
     private final IssueHierarchyNodeProvider issueHierarchyNodeProvider;
 
     public Map<LocalDate, WorkloadDailyReport> calculateWorkload(LocalDate from, LocalDate to, String projectId, String... wipStatuses) {
+        return calculateWorkload(from, to, projectId, alwaysTrue(), wipStatuses);
+    }
+
+    /**
+     * Issue takes part in workload of the day when it is in one of WIP statuses
+     * and is not blocked entire day. Instead of checking every issue on every
+     * day, days on which each issue takes part are read once as ranges and
+     * turned into events on which issue joins or leaves the set of active
+     * issues, then days are walked in a single pass. Active issues are
+     * reported in the same order every day so that sums are the same as when
+     * checking issue by issue. Days are split into chunks calculated in
+     * parallel.
+     *
+     * @param filter - limits issues taken into account, applied on top of
+     * filter of valid issues
+     */
+    public Map<LocalDate, WorkloadDailyReport> calculateWorkload(LocalDate from, LocalDate to, String projectId, Predicate<Issue> filter, String... wipStatuses) {
+        List<LocalDate> days = getReportedDays(from, to);
+        if (days.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<Issue> issues = getValidIssues(projectId, filter);
+        LocalDate firstDay = days.get(0);
+        LocalDate lastDay = days.get(days.size() - 1);
+        long[] events = getActivityChanges(issues, firstDay, lastDay, ImmutableSet.copyOf(wipStatuses));
+        Set<Issue>[] leafIssues = getLeafIssues(issues, events);
+
+        int chunkSize = Math.max(MIN_DAYS_PER_CHUNK, days.size() / (4 * Runtime.getRuntime().availableProcessors()));
+        int chunks = (days.size() + chunkSize - 1) / chunkSize;
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> calculateWorkload(days.subList(chunk * chunkSize, Math.min(days.size(), (chunk + 1) * chunkSize)),
+                        firstDay, events, leafIssues))
+                .collect(HashMap::new, Map::putAll, Map::putAll);
+    }
+
+    /**
+     * Workload of several projects, daily reports of projects are merged in
+     * given order.
+     */
+    public Map<LocalDate, WorkloadDailyReport> calculateWorkload(LocalDate from, LocalDate to, Collection<String> projectIds, String... wipStatuses) {
         Map<LocalDate, WorkloadDailyReport> workloadReport = new HashMap<>();
-        List<Issue> issues = getValidIssues(projectId);
-        LocalDate date = from;
+        for (String projectId : projectIds) {
+            calculateWorkload(from, to, projectId, wipStatuses)
+                    .forEach((date, dailyReport) -> workloadReport.merge(date, dailyReport, WorkloadDailyReport::merge));
+        }
+        return workloadReport;
+    }
 
-        while (date.isBefore(to) || date.isEqual(to)) {
+    /**
+     * Walks given consecutive days, set of active issues is first brought to
+     * the state of the first of them.
+     */
+    private Map<LocalDate, WorkloadDailyReport> calculateWorkload(List<LocalDate> days, LocalDate firstDay, long[] events, Set<Issue>[] leafIssues) {
+        Map<LocalDate, WorkloadDailyReport> workloadReport = new HashMap<>();
+        BitSet activeIssues = new BitSet(leafIssues.length);
+        int event = 0;
+        for (LocalDate date : days) {
+            long dayOffset = date.toEpochDay() - firstDay.toEpochDay();
+            while (event < events.length && (events[event] >>> 32) <= dayOffset) {
+                activeIssues.flip((int) events[event]);
+                event++;
+            }
             WorkloadDailyReport dailyReport = new WorkloadDailyReport();
-            issues.stream().filter(
-                    inStatusOnDay(date, wipStatuses).and(isBlockedEntireDay(date).negate())
-            )
-                    .forEach(issue -> {
-                        IssueHierarchyNode node = issueHierarchyNodeProvider.getHierarchy(issue);
-                        Double value = 100.0;
-                        Set<Issue> leafIssues = node.getLeafsIssues();
-                        double leafIssuesValue = value / leafIssues.size();
-                        leafIssues.forEach(i -> {
-                            dailyReport.reportWorkloadOnIssue(i, leafIssuesValue);
-                        });
-                    });
+            for (int i = activeIssues.nextSetBit(0); i >= 0; i = activeIssues.nextSetBit(i + 1)) {
+                Double value = 100.0;
+                double leafIssuesValue = value / leafIssues[i].size();
+                leafIssues[i].forEach(leafIssue -> {
+                    dailyReport.reportWorkloadOnIssue(leafIssue, leafIssuesValue);
+                });
+            }
             workloadReport.put(date, dailyReport);
+        }
+        return workloadReport;
+    }
 
+    /**
+     * Leaf issues of hierarchy of each issue which is active on any day,
+     * indexed as issues.
+     */
+    private Set<Issue>[] getLeafIssues(List<Issue> issues, long[] events) {
+        @SuppressWarnings("unchecked")
+        Set<Issue>[] leafIssues = new Set[issues.size()];
+        Arrays.stream(events).mapToInt(event -> (int) event).distinct().parallel()
+                .forEach(i -> leafIssues[i] = issueHierarchyNodeProvider.getHierarchy(issues.get(i)).getLeafsIssues());
+        return leafIssues;
+    }
+
+    /**
+     * Days from the first given day, then every following working day until
+     * the last one.
+     */
+    private List<LocalDate> getReportedDays(LocalDate from, LocalDate to) {
+        List<LocalDate> days = new ArrayList<>();
+        LocalDate date = from;
+        while (date.isBefore(to) || date.isEqual(to)) {
+            days.add(date);
             date = date.plusDays(1);
             while (date.getDayOfWeek().getValue() > 5) {
                 date = date.plusDays(1);
             }
         }
-        return workloadReport;
+        return days;
+    }
 
+    /**
+     * @return sorted events, each is day offset (upper 32 bits) on which issue
+     * (index in lower 32 bits) joins or leaves set of active issues
+     */
+    private long[] getActivityChanges(List<Issue> issues, LocalDate firstDay, LocalDate lastDay, Set<String> wipStatuses) {
+        long[] events = new long[16];
+        int size = 0;
+        for (int i = 0; i < issues.size(); i++) {
+            Issue issue = issues.get(i);
+            BitSet activeDays = issue.getStatusOnDaysMask(firstDay, lastDay, wipStatuses);
+            if (activeDays.isEmpty()) {
+                continue;
+            }
+            activeDays.andNot(issue.getAllDayBlockedMask(firstDay, lastDay));
+            int start = activeDays.nextSetBit(0);
+            while (start >= 0) {
+                int end = activeDays.nextClearBit(start);
+                if (size + 2 > events.length) {
+                    events = Arrays.copyOf(events, events.length * 2);
+                }
+                events[size++] = ((long) start << 32) | i;
+                events[size++] = ((long) end << 32) | i;
+                start = activeDays.nextSetBit(end);
+            }
+        }
+        events = Arrays.copyOf(events, size);
+        Arrays.sort(events);
+        return events;
     }
+
 // TODO: refactor asap to move away this filter from here
-    private List<Issue> getValidIssues(String projectId) {
-        return agileClient.getAgileProject(projectId).getAllIssues().stream()
-                .filter(
-                        inResolution("Won't Fix", "Cannot Reproduce", "Duplicate", "Incomplete", "Not an Issue", "Not Enough Information", "Retest", "Unresolved").negate()
-                                .and(isEpic().negate())
-                                .and(hasSubtasks().negate())
-                )
-                .collect(Collectors.toList());
+    private List<Issue> getValidIssues(String projectId, Predicate<Issue> filter) {
+        return agileClient.getAgileProject(projectId).getIssues(
+                inResolution("Won't Fix", "Cannot Reproduce", "Duplicate", "Incomplete", "Not an Issue", "Not Enough Information", "Retest", "Unresolved").negate()
+                        .and(isEpic().negate())
+                        .and(hasSubtasks().negate())
+                        .and(filter)
+        );
     }
 }
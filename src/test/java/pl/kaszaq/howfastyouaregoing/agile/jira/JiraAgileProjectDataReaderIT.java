@@ -28,6 +28,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
@@ -49,9 +50,13 @@ import static pl.kaszaq.howfastyouaregoing.Config.OBJECT_MAPPER;
 import pl.kaszaq.howfastyouaregoing.agile.AgileClient;
 import pl.kaszaq.howfastyouaregoing.agile.AgileClientFactory;
 import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProjectConfiguration;
 import pl.kaszaq.howfastyouaregoing.agile.AgileProjectProvider;
 import pl.kaszaq.howfastyouaregoing.agile.Issue;
+import pl.kaszaq.howfastyouaregoing.agile.ProjectFileFormat;
+import pl.kaszaq.howfastyouaregoing.agile.jira.JiraAgileProjectProviderBuilderFactory.JiraAgileProjectProviderBuilder;
 import pl.kaszaq.howfastyouaregoing.clock.HFYAGClock;
+import pl.kaszaq.howfastyouaregoing.storage.FileStorage;
 
 public class JiraAgileProjectDataReaderIT {
 
@@ -87,35 +92,40 @@ public class JiraAgileProjectDataReaderIT {
     @Test
     public void shouldReadProjectFromExternal_whenNotLoadedBefore() throws Exception {
         // given
-        AgileProjectProvider agileProjectProvider = JiraAgileProjectProviderBuilderFactory
-                .withCredentials("jira", "jira")
-                .withCacheOnly(false)
-                .withCacheDir(cacheDirectory)
-                .withJiraUrl("http://localhost:" + wireMockRule.port() + "/")
-                .build();
+        AgileProjectProvider agileProjectProvider = providerBuilder().build();
 
          AgileClient agileClient = AgileClientFactory.newClient()
                 .withAgileProjectProvider(agileProjectProvider)
                 .create();
         // when
         AgileProject project = agileClient.getAgileProject("AWW");
-        Map<String, Issue> issues = project.getAllIssues().stream().collect(Collectors.toMap(i -> i.getKey(), i->i));
         
         // then
-        JsonNode result = OBJECT_MAPPER.valueToTree(issues);
-        JsonNode expected = OBJECT_MAPPER.readTree(new File("src/test/resources/AWW_issues_sorted.json"));
-        assertThatJson(result).isEqualTo(expected);
+        assertSameAsSortedFixture(project);
     }
     
+    @Test
+    public void shouldReadProjectFromExternal_whenPagesFetchedInParallel() throws Exception {
+        // given
+        AgileProjectProvider agileProjectProvider = providerBuilder()
+                .withSearchParallelism(3)
+                .build();
+
+        AgileClient agileClient = AgileClientFactory.newClient()
+                .withAgileProjectProvider(agileProjectProvider)
+                .create();
+        // when
+        AgileProject project = agileClient.getAgileProject("AWW");
+
+        // then
+        assertSameAsSortedFixture(project);
+    }
+
         @Test
     public void shouldReadProjectFromFileAndExternal_whenLoadedBefore() throws Exception {
         // given
         FileUtils.copyDirectory(new File("src/test/resources/AWW_data_before_update"), cacheDirectory);
-        AgileProjectProvider agileProjectProvider = JiraAgileProjectProviderBuilderFactory
-                .withCredentials("jira", "jira")
-                .withCacheOnly(false)
-                .withCacheDir(cacheDirectory)
-                .withJiraUrl("http://localhost:" + wireMockRule.port() + "/")
+        AgileProjectProvider agileProjectProvider = providerBuilder()
                 .withMinutesUntilUpdate(0)
                 .build();
 
@@ -128,6 +138,265 @@ public class JiraAgileProjectDataReaderIT {
         assertThat(project.getIssue("AWW-136")).isNotNull().extracting(Issue::getSummary).isEqualTo("New issue");
     }
 
+    @Test
+    public void shouldCalculateSameStatusOrder_whenProjectReloaded() throws Exception {
+        // given
+        FileUtils.copyDirectory(new File("src/test/resources/AWW_data_before_update"), cacheDirectory);
+        AgileProjectConfiguration configuration = AgileProjectConfiguration.builder().build();
+        AgileProjectProvider agileProjectProvider = providerBuilder()
+                .withMinutesUntilUpdate(0)
+                .build();
+        AgileProject projectBeforeUpdate = agileProjectProvider.loadProject("AWW", configuration).get();
+        List<String> statusOrderBeforeUpdate = projectBeforeUpdate.getProbableStatusOrder();
+
+        // when
+        AgileProject project = agileProjectProvider.loadProject("AWW", configuration).get();
+
+        // then
+        AgileProject expected = providerBuilder()
+                .withCacheOnly(true)
+                .build()
+                .loadProject("AWW", configuration).get();
+        assertThat(project.getProbableStatusOrder()).containsExactlyElementsOf(expected.getProbableStatusOrder());
+        assertThat(project.getProbableStatusOrder()).containsExactly("Open", "In Progress", "Resolved", "Closed", "Reopened");
+        assertThat(projectBeforeUpdate.getProbableStatusOrder()).containsExactlyElementsOf(statusOrderBeforeUpdate);
+    }
+
+    @Test
+    public void shouldReadSameProjectFromBinaryFile_whenLoadedFromCacheOnly() throws Exception {
+        // given
+        AgileProjectProvider agileProjectProvider = providerBuilder()
+                .withProjectFileFormat(ProjectFileFormat.BINARY)
+                .build();
+        AgileClientFactory.newClient()
+                .withAgileProjectProvider(agileProjectProvider)
+                .create()
+                .getAgileProject("AWW");
+        AgileProjectProvider cacheOnlyProvider = providerBuilder()
+                .withCacheOnly(true)
+                .withProjectFileFormat(ProjectFileFormat.BINARY)
+                .build();
+
+        // when
+        AgileProject project = AgileClientFactory.newClient()
+                .withAgileProjectProvider(cacheOnlyProvider)
+                .create()
+                .getAgileProject("AWW");
+
+        // then
+        assertThat(new File(cacheDirectory, "AWW.bin")).exists();
+        assertThat(new File(cacheDirectory, "AWW.json")).doesNotExist();
+        assertSameAsSortedFixture(project);
+    }
+
+    @Test
+    public void shouldRebuildProjectFromRawJiraFiles_whenProjectFileRemoved() throws Exception {
+        // given
+        AgileProjectProvider agileProjectProvider = providerBuilder().build();
+        AgileClientFactory.newClient()
+                .withAgileProjectProvider(agileProjectProvider)
+                .create()
+                .getAgileProject("AWW");
+        FileUtils.forceDelete(new File(cacheDirectory, "AWW.json"));
+        AgileProjectProvider cacheOnlyProvider = providerBuilder()
+                .withCacheOnly(true)
+                .build();
+
+        // when
+        AgileProject project = AgileClientFactory.newClient()
+                .withAgileProjectProvider(cacheOnlyProvider)
+                .create()
+                .getAgileProject("AWW");
+
+        // then
+        assertSameAsSortedFixture(project);
+    }
+
+    @Test
+    public void shouldRebuildProjectFromPackedRawJiraFiles_whenProjectFileRemoved() throws Exception {
+        // given
+        AgileProjectProvider agileProjectProvider = providerBuilder()
+                .withPackedRawJiraFiles(true)
+                .build();
+        AgileClientFactory.newClient()
+                .withAgileProjectProvider(agileProjectProvider)
+                .create()
+                .getAgileProject("AWW");
+        FileUtils.forceDelete(new File(cacheDirectory, "AWW.json"));
+        AgileProjectProvider cacheOnlyProvider = providerBuilder()
+                .withCacheOnly(true)
+                .withPackedRawJiraFiles(true)
+                .build();
 
+        // when
+        AgileProject project = AgileClientFactory.newClient()
+                .withAgileProjectProvider(cacheOnlyProvider)
+                .create()
+                .getAgileProject("AWW");
 
+        // then
+        assertThat(new File(cacheDirectory, "jira/segments/AWW/index")).exists();
+        assertThat(new File(cacheDirectory, "jira/issues").list((dir, name) -> name.matches("AWW-\\d+\\.json"))).isEmpty();
+        assertSameAsSortedFixture(project);
+    }
+
+    @Test
+    public void shouldRebuildAllIssues_whenLegacyRawJiraFilesUpdatedIntoPackedFiles() throws Exception {
+        // given
+        FileUtils.copyDirectory(new File("src/test/resources/AWW_data_before_update"), cacheDirectory);
+        AgileProjectProvider agileProjectProvider = providerBuilder()
+                .withMinutesUntilUpdate(0)
+                .withPackedRawJiraFiles(true)
+                .build();
+        int issuesAfterUpdate = AgileClientFactory.newClient()
+                .withAgileProjectProvider(agileProjectProvider)
+                .create()
+                .getAgileProject("AWW")
+                .getAllIssues()
+                .size();
+        FileUtils.forceDelete(new File(cacheDirectory, "AWW.json"));
+        AgileProjectProvider cacheOnlyProvider = providerBuilder()
+                .withCacheOnly(true)
+                .withPackedRawJiraFiles(true)
+                .build();
+
+        // when
+        AgileProject project = AgileClientFactory.newClient()
+                .withAgileProjectProvider(cacheOnlyProvider)
+                .create()
+                .getAgileProject("AWW");
+
+        // then
+        assertThat(project.getAllIssues()).hasSize(issuesAfterUpdate);
+        assertThat(project.getIssue("AWW-10")).isNotNull().extracting(Issue::getSummary).isEqualTo("Updated issue");
+        assertThat(project.getIssue("AWW-136")).isNotNull().extracting(Issue::getSummary).isEqualTo("New issue");
+    }
+
+    @Test
+    public void shouldReadSameProjectFromCache_whenFileStorageSupportsOnlyText() throws Exception {
+        // given
+        FileStorage textOnlyFileStorage = new FileStorage() {
+            @Override
+            public String loadFile(File file) throws IOException {
+                return FileUtils.readFileToString(file, "UTF-8");
+            }
+
+            @Override
+            public void storeFile(File file, String data) throws IOException {
+                FileUtils.writeStringToFile(file, data, "UTF-8");
+            }
+        };
+        AgileProjectProvider agileProjectProvider = providerBuilder()
+                .withFileStorage(textOnlyFileStorage)
+                .withProjectFileFormat(ProjectFileFormat.BINARY)
+                .build();
+        AgileClientFactory.newClient()
+                .withAgileProjectProvider(agileProjectProvider)
+                .create()
+                .getAgileProject("AWW");
+        FileUtils.deleteQuietly(new File(cacheDirectory, "jira"));
+        AgileProjectProvider cacheOnlyProvider = providerBuilder()
+                .withCacheOnly(true)
+                .withFileStorage(textOnlyFileStorage)
+                .withProjectFileFormat(ProjectFileFormat.BINARY)
+                .build();
+
+        // when
+        AgileProject project = AgileClientFactory.newClient()
+                .withAgileProjectProvider(cacheOnlyProvider)
+                .create()
+                .getAgileProject("AWW");
+
+        // then
+        assertSameAsSortedFixture(project);
+    }
+
+    @Test
+    public void shouldMigrateJsonProjectFileToBinary_whenBinaryFormatSelected() throws Exception {
+        // given
+        FileUtils.copyDirectory(new File("src/test/resources/AWW_data_before_update"), cacheDirectory);
+        AgileProjectProvider agileProjectProvider = providerBuilder()
+                .withMinutesUntilUpdate(0)
+                .withProjectFileFormat(ProjectFileFormat.BINARY)
+                .build();
+
+        // when
+        AgileProject project = AgileClientFactory.newClient()
+                .withAgileProjectProvider(agileProjectProvider)
+                .create()
+                .getAgileProject("AWW");
+
+        // then
+        assertThat(new File(cacheDirectory, "AWW.bin")).exists();
+        assertThat(new File(cacheDirectory, "AWW.json")).doesNotExist();
+        assertThat(project.getIssue("AWW-10")).isNotNull().extracting(Issue::getSummary).isEqualTo("Updated issue");
+        assertThat(project.getIssue("AWW-136")).isNotNull().extracting(Issue::getSummary).isEqualTo("New issue");
+    }
+
+    @Test
+    public void shouldReadUpdatedProjectFromJournal_whenLoadedFromCacheOnly() throws Exception {
+        // given
+        FileUtils.copyDirectory(new File("src/test/resources/AWW_data_before_update"), cacheDirectory);
+        String projectFileBeforeUpdate = FileUtils.readFileToString(new File(cacheDirectory, "AWW.json"), "UTF-8");
+        AgileProjectProvider agileProjectProvider = providerBuilder()
+                .withMinutesUntilUpdate(0)
+                .build();
+        AgileClientFactory.newClient()
+                .withAgileProjectProvider(agileProjectProvider)
+                .create()
+                .getAgileProject("AWW");
+        AgileProjectProvider cacheOnlyProvider = providerBuilder()
+                .withCacheOnly(true)
+                .build();
+
+        // when
+        AgileProject project = AgileClientFactory.newClient()
+                .withAgileProjectProvider(cacheOnlyProvider)
+                .create()
+                .getAgileProject("AWW");
+
+        // then
+        assertThat(new File(cacheDirectory, "AWW.journal")).exists();
+        assertThat(FileUtils.readFileToString(new File(cacheDirectory, "AWW.json"), "UTF-8")).isEqualTo(projectFileBeforeUpdate);
+        assertThat(project.getIssue("AWW-10")).isNotNull().extracting(Issue::getSummary).isEqualTo("Updated issue");
+        assertThat(project.getIssue("AWW-136")).isNotNull().extracting(Issue::getSummary).isEqualTo("New issue");
+    }
+
+    @Test
+    public void shouldRecreateProject_whenJournalDamaged() throws Exception {
+        // given
+        AgileProjectProvider agileProjectProvider = providerBuilder().build();
+        AgileClientFactory.newClient()
+                .withAgileProjectProvider(agileProjectProvider)
+                .create()
+                .getAgileProject("AWW");
+        FileUtils.writeStringToFile(new File(cacheDirectory, "AWW.journal"), "damaged\n{}\n", "UTF-8");
+        AgileProjectProvider cacheOnlyProvider = providerBuilder()
+                .withCacheOnly(true)
+                .build();
+
+        // when
+        AgileProject project = AgileClientFactory.newClient()
+                .withAgileProjectProvider(cacheOnlyProvider)
+                .create()
+                .getAgileProject("AWW");
+
+        // then
+        assertThat(new File(cacheDirectory, "AWW.journal")).doesNotExist();
+        assertSameAsSortedFixture(project);
+    }
+
+    private JiraAgileProjectProviderBuilder providerBuilder() {
+        return JiraAgileProjectProviderBuilderFactory
+                .withCredentials("jira", "jira")
+                .withCacheDir(cacheDirectory)
+                .withJiraUrl("http://localhost:" + wireMockRule.port() + "/");
+    }
+
+    private static void assertSameAsSortedFixture(AgileProject project) throws IOException {
+        Map<String, Issue> issues = project.getAllIssues().stream().collect(Collectors.toMap(Issue::getKey, i -> i));
+        JsonNode result = OBJECT_MAPPER.valueToTree(issues);
+        JsonNode expected = OBJECT_MAPPER.readTree(new File("src/test/resources/AWW_issues_sorted.json"));
+        assertThatJson(result).isEqualTo(expected);
+    }
 }
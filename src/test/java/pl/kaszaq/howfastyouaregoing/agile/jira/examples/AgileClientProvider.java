@@ -1,25 +1,56 @@
 package pl.kaszaq.howfastyouaregoing.agile.jira.examples;
 
 import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
 import pl.kaszaq.howfastyouaregoing.Config;
 import pl.kaszaq.howfastyouaregoing.agile.AgileClient;
 import pl.kaszaq.howfastyouaregoing.agile.AgileClientFactory;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProjectConfiguration;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProjectDataObserver;
 import pl.kaszaq.howfastyouaregoing.agile.AgileProjectProvider;
+import pl.kaszaq.howfastyouaregoing.agile.Issue;
+import pl.kaszaq.howfastyouaregoing.agile.IssueData;
 import pl.kaszaq.howfastyouaregoing.agile.jira.JiraAgileProjectProviderBuilderFactory;
 
 public class AgileClientProvider {
 
+    public static final String DATA_BEFORE_UPDATE = "src/test/resources/AWW_data_before_update/";
+    public static final String DATA_AFTER_UPDATE = "src/test/resources/AWW_data_after_update/";
+
     public static AgileClient createClient() {
 
-        AgileProjectProvider agileProjectProvider = JiraAgileProjectProviderBuilderFactory
+        AgileProjectProvider agileProjectProvider = createProvider(DATA_AFTER_UPDATE);
+
+        return AgileClientFactory.newClient()
+                .withAgileProjectProvider(agileProjectProvider)
+                .create();
+    }
+
+    public static AgileProjectProvider createProvider(String cacheDir) {
+        return JiraAgileProjectProviderBuilderFactory
                 .withJsession("")
                 .withCacheOnly(true)
-                .withCacheDir(new File("src/test/resources/AWW_data_after_update/"))
+                .withCacheDir(new File(cacheDir))
                 .withJiraUrl("/")
                 .build();
+    }
 
-        return AgileClientFactory.newClient()
-                .withAgileProjectProvider(agileProjectProvider)
-                .create();
+    /**
+     * Loads project after update and reports to observer issues changed since
+     * project before update, as jira reader does when it downloads them.
+     */
+    public static AgileProject loadUpdatedProject(AgileProject projectBeforeUpdate, AgileProjectConfiguration configuration,
+            AgileProjectDataObserver observer) {
+        return createProvider(DATA_AFTER_UPDATE).loadProject(projectBeforeUpdate.getId(), configuration, (data, progress) -> {
+            List<IssueData> changedIssues = data.getIssues().values().stream()
+                    .filter(issue -> {
+                        Issue previous = projectBeforeUpdate.getIssue(issue.getKey());
+                        return previous == null || !previous.getUpdated().isEqual(issue.getUpdated());
+                    })
+                    .collect(Collectors.toList());
+            observer.updated(data, changedIssues, progress);
+        }).get();
     }
 }
@@ -0,0 +1,31 @@
+package pl.kaszaq.howfastyouaregoing.agile.jira.examples;
+
+import java.time.LocalDate;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
+import pl.kaszaq.howfastyouaregoing.cfd.CfdMatrix;
+import pl.kaszaq.howfastyouaregoing.cfd.CfdDataComputer;
+import static pl.kaszaq.howfastyouaregoing.utils.CommonPredicates.alwaysTrue;
+
+/**
+ * Same data as in {@link CfdTest} but read from dense matrix which already
+ * holds cumulative values for every day.
+ */
+public class CfdMatrixTest {
+
+    @Test
+    public void testSampleCfdMatrixCreation() {
+        AgileProject project = AgileClientProvider.createClient().getAgileProject("AWW");
+
+        CfdMatrix matrix = CfdDataComputer.calculateCfdMatrix(project, alwaysTrue());
+
+        assertThat(matrix.getStatuses()).containsExactly("Open", "In Progress", "Resolved", "Closed", "Reopened");
+        assertThat(matrix.getFirstDay()).isEqualTo(LocalDate.of(2018, 6, 22));
+        assertThat(matrix.getCounts()[0]).containsExactly(3, 0, 0, 0, 0);
+        assertThat(matrix.getCounts()[3]).containsExactly(2, 1, 1, 0, 0);
+        assertThat(matrix.getCount(LocalDate.of(2018, 6, 29), "In Progress")).isEqualTo(4);
+        assertThat(matrix.getCount(LocalDate.of(2018, 7, 1), "Resolved")).isEqualTo(1);
+        assertThat(matrix.getCount(LocalDate.of(2018, 7, 11), "Closed")).isEqualTo(5);
+    }
+}
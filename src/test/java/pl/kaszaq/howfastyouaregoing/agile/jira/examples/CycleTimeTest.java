@@ -2,17 +2,22 @@ package pl.kaszaq.howfastyouaregoing.agile.jira.examples;
 
 import com.google.common.collect.Sets;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.SortedMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.offset;
+import static org.assertj.core.api.Assertions.withinPercentage;
 import org.junit.Test;
 import pl.kaszaq.howfastyouaregoing.agile.AgileClient;
 import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
 import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.hasSubtasks;
 import pl.kaszaq.howfastyouaregoing.cycletime.CycleTimeComputer;
+import pl.kaszaq.howfastyouaregoing.cycletime.CycleTimePeriod;
+import pl.kaszaq.howfastyouaregoing.cycletime.QuantileSketch;
 
 public class CycleTimeTest {
 
@@ -55,4 +60,28 @@ public class CycleTimeTest {
                 entry("2018-11-12", "157.14083333333335"),
                 entry("2018-11-14", "332.9625"));
     }
+
+    @Test
+    public void testSampleCycleTimePercentiles() {
+
+        AgileClient agileClient = AgileClientProvider.createClient();
+        AgileProject agileProject = agileClient.getAgileProject("AWW");
+        final HashSet<String> finalStatuses = Sets.newHashSet("Closed");
+
+        SortedMap<LocalDate, QuantileSketch> daily = CycleTimeComputer.calculateCycleTimeDistribution(agileProject, hasSubtasks().negate(), finalStatuses, CycleTimePeriod.DAY, "In Progress");
+        SortedMap<LocalDate, QuantileSketch> monthly = CycleTimeComputer.calculateCycleTimeDistribution(agileProject, hasSubtasks().negate(), finalStatuses, CycleTimePeriod.MONTH, "In Progress");
+
+        assertThat(daily.get(LocalDate.parse("2018-10-10")).getAverage()).isCloseTo(789.4393055555556, offset(1e-9));
+        assertThat(daily.get(LocalDate.parse("2018-06-28")).getP50()).isCloseTo(52.80027777777778, withinPercentage(1));
+        assertThat(monthly.keySet()).containsExactly(
+                LocalDate.parse("2018-06-01"), LocalDate.parse("2018-07-01"), LocalDate.parse("2018-08-01"),
+                LocalDate.parse("2018-09-01"), LocalDate.parse("2018-10-01"), LocalDate.parse("2018-11-01"));
+        assertThat(monthly.values().stream().mapToLong(QuantileSketch::getCount).sum())
+                .isEqualTo(daily.values().stream().mapToLong(QuantileSketch::getCount).sum());
+        QuantileSketch july = monthly.get(LocalDate.parse("2018-07-01"));
+        assertThat(july.getP50()).isLessThanOrEqualTo(july.getP85());
+        assertThat(july.getP85()).isLessThanOrEqualTo(july.getP95());
+        assertThat(CycleTimeComputer.mergeCycleTimeDistributions(Arrays.asList(monthly, monthly)).get(LocalDate.parse("2018-07-01")).getCount())
+                .isEqualTo(2 * july.getCount());
+    }
 }
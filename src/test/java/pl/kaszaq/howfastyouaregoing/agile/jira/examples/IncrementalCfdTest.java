@@ -0,0 +1,35 @@
+package pl.kaszaq.howfastyouaregoing.agile.jira.examples;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProjectConfiguration;
+import pl.kaszaq.howfastyouaregoing.cfd.CfdData;
+import pl.kaszaq.howfastyouaregoing.cfd.CfdDataComputer;
+import pl.kaszaq.howfastyouaregoing.cfd.IncrementalCfd;
+import static pl.kaszaq.howfastyouaregoing.utils.CommonPredicates.alwaysTrue;
+
+public class IncrementalCfdTest {
+
+    @Test
+    public void testCfdUpdatedWithChangedIssuesOnly() {
+        AgileProjectConfiguration configuration = AgileProjectConfiguration.builder().build();
+        IncrementalCfd cfd = new IncrementalCfd(alwaysTrue());
+        AgileProject projectBeforeUpdate = AgileClientProvider.createProvider(AgileClientProvider.DATA_BEFORE_UPDATE)
+                .loadProject("AWW", configuration, cfd).get();
+        cfd.update(projectBeforeUpdate);
+
+        AgileProject project = AgileClientProvider.loadUpdatedProject(projectBeforeUpdate, configuration, cfd);
+        CfdData cfdData = cfd.update(project);
+
+        CfdData expected = CfdDataComputer.calculateCfdData(project, alwaysTrue());
+        assertThat(cfdData.getDailyTransitions().keySet()).containsExactlyElementsOf(expected.getDailyTransitions().keySet());
+        expected.getDailyTransitions().forEach((date, changes) -> {
+            for (String status : project.getProbableStatusOrder()) {
+                assertThat(cfdData.getDailyTransitions().get(date).getValueChangeForStatus(status))
+                        .as("%s on %s", status, date)
+                        .isEqualTo(changes.getValueChangeForStatus(status));
+            }
+        });
+    }
+}
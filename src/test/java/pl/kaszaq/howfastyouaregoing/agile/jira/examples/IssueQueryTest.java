@@ -0,0 +1,60 @@
+package pl.kaszaq.howfastyouaregoing.agile.jira.examples;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
+import pl.kaszaq.howfastyouaregoing.agile.Issue;
+import pl.kaszaq.howfastyouaregoing.agile.IssueCriteria;
+import pl.kaszaq.howfastyouaregoing.agile.IssueFilters;
+import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.hasAllComponents;
+import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.hasAnyComponents;
+import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.hasAnyLabels;
+import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.inResolution;
+import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.inStatus;
+import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.isSubtask;
+import static pl.kaszaq.howfastyouaregoing.agile.IssuePredicates.isType;
+
+/**
+ * Queries and criteria on project are answered with indexes and return same
+ * issues as filtering all issues with corresponding predicates.
+ */
+public class IssueQueryTest {
+
+    @Test
+    public void shouldReturnSameIssuesAsPredicates() {
+        AgileProject project = AgileClientProvider.createClient().getAgileProject("AWW");
+
+        List<Issue> queried = project.query()
+                .isType("Story", "Bug")
+                .inStatus("Done", "In Progress")
+                .or(project.query().hasAnyLabels("Backend", "Sales").hasAllComponents("Server"))
+                .getIssues();
+
+        Predicate<Issue> predicate = isType("Story", "Bug").and(inStatus("Done", "In Progress"))
+                .or(hasAnyLabels("Backend", "Sales").and(hasAllComponents("Server")));
+        List<Issue> filtered = project.getAllIssues().stream().filter(predicate).collect(Collectors.toList());
+
+        assertThat(queried).isNotEmpty().containsExactlyElementsOf(filtered);
+        assertThat(project.query().isSubtask().not().count())
+                .isEqualTo(project.getAllIssues().stream().filter(isSubtask().negate()).count());
+    }
+
+    @Test
+    public void shouldReturnSameIssuesForCriteriaAsForPredicates() {
+        AgileProject project = AgileClientProvider.createClient().getAgileProject("AWW");
+
+        IssueCriteria criteria = IssueFilters.or(
+                IssueFilters.isType("Story").and(IssueFilters.hasAnyComponents("Server", "Spell").negate()),
+                IssueFilters.inResolution("Done").and(issue -> issue.getKey().endsWith("1")));
+        Predicate<Issue> predicate = isType("Story").and(hasAnyComponents("Server", "Spell").negate())
+                .or(inResolution("Done").and(issue -> issue.getKey().endsWith("1")));
+
+        assertThat(project.getIssues(criteria))
+                .isNotEmpty()
+                .containsExactlyElementsOf(project.getIssues(predicate))
+                .allMatch(criteria);
+    }
+}
@@ -0,0 +1,54 @@
+package pl.kaszaq.howfastyouaregoing.agile.jira.examples;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Set;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProject;
+import pl.kaszaq.howfastyouaregoing.agile.AgileProjectConfiguration;
+import pl.kaszaq.howfastyouaregoing.agile.Issue;
+import pl.kaszaq.howfastyouaregoing.agile.grouping.IssueAggregate;
+import pl.kaszaq.howfastyouaregoing.agile.grouping.IssueRollup;
+import pl.kaszaq.howfastyouaregoing.clock.HFYAGClock;
+
+public class IssueRollupTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        // time in current status is counted until now
+        HFYAGClock.setClock(Clock.fixed(LocalDateTime.of(2018, 11, 25, 10, 0).atZone(ZoneId.of("Z")).toInstant(), ZoneId.of("Z")));
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        HFYAGClock.setClock(Clock.systemDefaultZone());
+    }
+
+    @Test
+    public void testRollupUpdatedWithChangedIssuesOnly() {
+        AgileProjectConfiguration configuration = AgileProjectConfiguration.builder().build();
+        Set<String> doneStatuses = ImmutableSet.of("Resolved", "Closed");
+        IssueRollup rollup = new IssueRollup(doneStatuses);
+        AgileProject projectBeforeUpdate = AgileClientProvider.createProvider(AgileClientProvider.DATA_BEFORE_UPDATE)
+                .loadProject("AWW", configuration, rollup).get();
+        rollup.update(ImmutableList.of(ImmutableSet.of(projectBeforeUpdate)));
+
+        AgileProject project = AgileClientProvider.loadUpdatedProject(projectBeforeUpdate, configuration, rollup);
+        rollup.update(ImmutableList.of(ImmutableSet.of(project)));
+
+        IssueRollup expected = new IssueRollup(doneStatuses).update(ImmutableList.of(ImmutableSet.of(project)));
+        for (Issue issue : project.getAllIssues()) {
+            IssueAggregate aggregate = rollup.getAggregate(issue);
+            IssueAggregate expectedAggregate = expected.getAggregate(issue);
+            assertThat(aggregate.getLeafsCount()).as(issue.getKey()).isEqualTo(expectedAggregate.getLeafsCount());
+            assertThat(aggregate.getDoneCount()).as(issue.getKey()).isEqualTo(expectedAggregate.getDoneCount());
+            assertThat(aggregate.getTimeInStatus()).as(issue.getKey()).isEqualTo(expectedAggregate.getTimeInStatus());
+        }
+    }
+}